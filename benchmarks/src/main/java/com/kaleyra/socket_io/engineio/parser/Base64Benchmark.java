@@ -0,0 +1,40 @@
+package com.kaleyra.socket_io.engineio.parser;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the Base64 coding of binary packets sent over polling.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Base64Benchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int payloadSize;
+
+    private byte[] data;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        data = ParserBenchmark.randomBytes(new Random(42), payloadSize);
+        encoded = Base64.encodeToString(data, Base64.DEFAULT);
+    }
+
+    @Benchmark
+    public String encodeToString() {
+        return Base64.encodeToString(data, Base64.DEFAULT);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return Base64.decode(encoded, Base64.DEFAULT);
+    }
+}
@@ -0,0 +1,206 @@
+package com.kaleyra.socket_io.engineio.parser;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the packet and payload encoding every message goes through.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class PacketState {
+
+        /**
+         * Size in characters (text) or bytes (binary) of the packet data.
+         */
+        @Param({"16", "1024", "65536"})
+        public int payloadSize;
+
+        Packet<String> textPacket;
+        Packet<byte[]> binaryPacket;
+        String encodedTextPacket;
+        String encodedBinaryPacket;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(42);
+            textPacket = new Packet<String>(Packet.MESSAGE, randomText(random, payloadSize));
+            binaryPacket = new Packet<byte[]>(Packet.MESSAGE, randomBytes(random, payloadSize));
+            encodedTextPacket = "4" + textPacket.data;
+            // as a binary packet is sent over polling
+            encodedBinaryPacket = "b" + Base64.encodeToString(binaryPacket.data, Base64.DEFAULT);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PayloadState {
+
+        /**
+         * Size in characters (text) or bytes (binary) of each packet's data.
+         */
+        @Param({"16", "1024", "65536"})
+        public int payloadSize;
+
+        /**
+         * Number of packets batched in the payload.
+         */
+        @Param({"1", "16", "256"})
+        public int packetCount;
+
+        /**
+         * Percentage of binary packets within the payload.
+         */
+        @Param({"0", "50", "100"})
+        public int binaryPercent;
+
+        Packet[] packets;
+        String encodedPayload;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(42);
+            int binaryCount = packetCount * binaryPercent / 100;
+
+            packets = new Packet[packetCount];
+            for (int i = 0; i < packetCount; i++) {
+                packets[i] = i < binaryCount
+                        ? new Packet<byte[]>(Packet.MESSAGE, randomBytes(random, payloadSize))
+                        : new Packet<String>(Packet.MESSAGE, randomText(random, payloadSize));
+            }
+            // interleave binary and text packets as a real write buffer would
+            Collections.shuffle(Arrays.asList(packets), random);
+
+            final String[] encoded = new String[1];
+            Parser.encodePayload(packets, new Parser.EncodeCallback<String>() {
+                @Override
+                public void call(String data) {
+                    encoded[0] = data;
+                }
+            });
+            encodedPayload = encoded[0];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class BinaryPayloadState {
+
+        /**
+         * Size in bytes of each packet's data.
+         */
+        @Param({"16", "1024", "65536"})
+        public int payloadSize;
+
+        /**
+         * Number of packets batched in the payload.
+         */
+        @Param({"1", "16", "256"})
+        public int packetCount;
+
+        String encodedPayload;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(42);
+            Packet[] packets = new Packet[packetCount];
+            for (int i = 0; i < packetCount; i++) {
+                packets[i] = new Packet<byte[]>(Packet.MESSAGE, randomBytes(random, payloadSize));
+            }
+
+            final String[] encoded = new String[1];
+            Parser.encodePayload(packets, new Parser.EncodeCallback<String>() {
+                @Override
+                public void call(String data) {
+                    encoded[0] = data;
+                }
+            });
+            encodedPayload = encoded[0];
+        }
+    }
+
+    @Benchmark
+    public void encodeTextPacket(PacketState state, final Blackhole bh) {
+        Parser.encodePacket(state.textPacket, new Parser.EncodeCallback<String>() {
+            @Override
+            public void call(String data) {
+                bh.consume(data);
+            }
+        });
+    }
+
+    @Benchmark
+    public void encodeBinaryPacket(PacketState state, final Blackhole bh) {
+        Parser.encodePacket(state.binaryPacket, new Parser.EncodeCallback<byte[]>() {
+            @Override
+            public void call(byte[] data) {
+                bh.consume(data);
+            }
+        });
+    }
+
+    @Benchmark
+    public Packet<String> decodeTextPacket(PacketState state) {
+        return Parser.decodePacket(state.encodedTextPacket);
+    }
+
+    @Benchmark
+    public Packet decodeBinaryPacket(PacketState state) {
+        return Parser.decodeBase64Packet(state.encodedBinaryPacket);
+    }
+
+    @Benchmark
+    public void encodePayload(PayloadState state, final Blackhole bh) {
+        Parser.encodePayload(state.packets, new Parser.EncodeCallback<String>() {
+            @Override
+            public void call(String data) {
+                bh.consume(data);
+            }
+        });
+    }
+
+    @Benchmark
+    public void decodePayload(PayloadState state, final Blackhole bh) {
+        Parser.decodePayload(state.encodedPayload, new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                bh.consume(packet);
+                return true;
+            }
+        });
+    }
+
+    @Benchmark
+    public void decodeBinaryPayload(BinaryPayloadState state, final Blackhole bh) {
+        Parser.decodePayload(state.encodedPayload, new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                bh.consume(packet);
+                return true;
+            }
+        });
+    }
+
+    static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,50 @@
+package com.kaleyra.socket_io.parseqs;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the query string handling done on every polling request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseQSBenchmark {
+
+    /**
+     * Number of key/value pairs in the query.
+     */
+    @Param({"3", "10"})
+    public int pairCount;
+
+    private Map<String, String> query;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        query = new LinkedHashMap<String, String>();
+        query.put("EIO", "4");
+        query.put("transport", "polling");
+        query.put("sid", "dGhpcyBpcyBhIHNpZA==");
+        for (int i = query.size(); i < pairCount; i++) {
+            query.put("key" + i, "value " + i + " & more");
+        }
+        encoded = ParseQS.encode(query);
+    }
+
+    @Benchmark
+    public String encode() {
+        return ParseQS.encode(query);
+    }
+
+    @Benchmark
+    public Map<String, String> decode() {
+        return ParseQS.decode(encoded);
+    }
+}
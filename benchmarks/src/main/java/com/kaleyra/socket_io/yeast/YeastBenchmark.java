@@ -0,0 +1,21 @@
+package com.kaleyra.socket_io.yeast;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the timestamp generation used by {@code timestampRequests}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YeastBenchmark {
+
+    @Benchmark
+    public String yeast() {
+        return Yeast.yeast();
+    }
+}
@@ -0,0 +1,76 @@
+package com.kaleyra.socket_io.buffer;
+
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A pool of fixed size byte buffers. Buffers are taken with {@link #acquire()} and come back
+ * to the pool when {@link PooledBuffer#release()} is called, usually by the socket they were
+ * sent with once it has written them. The pool is safe to use from any thread.
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final Queue<PooledBuffer> pool = new ConcurrentLinkedQueue<PooledBuffer>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Creates a pool.
+     *
+     * @param bufferSize the capacity of the buffers.
+     * @param maxPooled the number of released buffers kept for reuse; more are left to the GC.
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        }
+        if (maxPooled < 0) {
+            throw new IllegalArgumentException("maxPooled must not be negative: " + maxPooled);
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Takes a buffer from the pool, or allocates one if the pool is empty. The buffer is
+     * cleared, ready to be written to.
+     *
+     * @return a buffer owned by the caller until it is released or sent.
+     */
+    public PooledBuffer acquire() {
+        PooledBuffer buffer = this.pool.poll();
+        if (buffer == null) {
+            return new PooledBuffer(this, ByteBuffer.allocate(this.bufferSize));
+        }
+        this.pooled.decrementAndGet();
+        buffer.acquired();
+        return buffer;
+    }
+
+    public int bufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * Returns the number of buffers waiting in the pool.
+     *
+     * @return the number of pooled buffers.
+     */
+    public int pooled() {
+        return this.pooled.get();
+    }
+
+    /*package*/ void recycle(PooledBuffer buffer) {
+        if (this.pooled.incrementAndGet() > this.maxPooled) {
+            this.pooled.decrementAndGet();
+            return;
+        }
+        buffer.buffer().clear();
+        this.pool.offer(buffer);
+    }
+}
@@ -0,0 +1,52 @@
+package com.kaleyra.socket_io.buffer;
+
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * A byte buffer taken from a {@link BufferPool}. Its owner either releases it, or gives up
+ * ownership by sending it, in which case it is released once it has been written.
+ */
+public final class PooledBuffer {
+
+    private final BufferPool pool;
+    private final ByteBuffer buffer;
+    private final AtomicBoolean owned = new AtomicBoolean(true);
+
+    /*package*/ PooledBuffer(BufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Returns the underlying buffer. When the buffer is sent, the bytes between its position
+     * and its limit are sent.
+     *
+     * @return the buffer.
+     */
+    public ByteBuffer buffer() {
+        return this.buffer;
+    }
+
+    public BufferPool pool() {
+        return this.pool;
+    }
+
+    /**
+     * Returns the buffer to its pool. The buffer must not be used afterwards.
+     *
+     * @throws IllegalStateException if the buffer was already released.
+     */
+    public void release() {
+        if (!this.owned.compareAndSet(true, false)) {
+            throw new IllegalStateException("buffer already released");
+        }
+        this.pool.recycle(this);
+    }
+
+    /*package*/ void acquired() {
+        this.owned.set(true);
+    }
+}
@@ -2,22 +2,25 @@ package com.kaleyra.socket_io.emitter;
 
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 
 
 /**
  * The event emitter which is ported from the JavaScript module. This class is thread-safe.
  *
+ * The listeners of each event are kept in an array that is never modified: adding or removing
+ * a listener swaps in a new array, so emitting is a plain loop over the current one. An emit
+ * that runs while listeners change calls the listeners it started with.
+ *
  * @see <a href="https://github.com/component/emitter">https://github.com/component/emitter</a>
  */
 public class Emitter {
 
-    private ConcurrentMap<String, ConcurrentLinkedQueue<Listener>> callbacks
-            = new ConcurrentHashMap<String, ConcurrentLinkedQueue<Listener>>();
+    private ConcurrentMap<String, Listener[]> callbacks
+            = new ConcurrentHashMap<String, Listener[]>();
 
     /**
      * Listens on the event.
@@ -26,16 +29,20 @@ public class Emitter {
      * @return a reference to this object.
      */
     public Emitter on(String event, Listener fn) {
-        ConcurrentLinkedQueue<Listener> callbacks = this.callbacks.get(event);
-        if (callbacks == null) {
-            callbacks = new ConcurrentLinkedQueue <Listener>();
-            ConcurrentLinkedQueue<Listener> tempCallbacks = this.callbacks.putIfAbsent(event, callbacks);
-            if (tempCallbacks != null) {
-                callbacks = tempCallbacks;
+        for (;;) {
+            Listener[] callbacks = this.callbacks.get(event);
+            if (callbacks == null) {
+                if (this.callbacks.putIfAbsent(event, new Listener[] {fn}) == null) {
+                    return this;
+                }
+                continue;
+            }
+            Listener[] newCallbacks = Arrays.copyOf(callbacks, callbacks.length + 1);
+            newCallbacks[callbacks.length] = fn;
+            if (this.callbacks.replace(event, callbacks, newCallbacks)) {
+                return this;
             }
         }
-        callbacks.add(fn);
-        return this;
     }
 
     /**
@@ -79,18 +86,38 @@ public class Emitter {
      * @return a reference to this object.
      */
     public Emitter off(String event, Listener fn) {
-        ConcurrentLinkedQueue<Listener> callbacks = this.callbacks.get(event);
-        if (callbacks != null) {
-            Iterator<Listener> it = callbacks.iterator();
-            while (it.hasNext()) {
-                Listener internal = it.next();
-                if (Emitter.sameAs(fn, internal)) {
-                    it.remove();
-                    break;
-                }
+        for (;;) {
+            Listener[] callbacks = this.callbacks.get(event);
+            if (callbacks == null) {
+                return this;
+            }
+            int index = Emitter.indexOf(callbacks, fn);
+            if (index < 0) {
+                return this;
+            }
+
+            boolean removed;
+            if (callbacks.length == 1) {
+                removed = this.callbacks.remove(event, callbacks);
+            } else {
+                Listener[] newCallbacks = new Listener[callbacks.length - 1];
+                System.arraycopy(callbacks, 0, newCallbacks, 0, index);
+                System.arraycopy(callbacks, index + 1, newCallbacks, index, newCallbacks.length - index);
+                removed = this.callbacks.replace(event, callbacks, newCallbacks);
+            }
+            if (removed) {
+                return this;
             }
         }
-        return this;
+    }
+
+    private static int indexOf(Listener[] callbacks, Listener fn) {
+        for (int i = 0; i < callbacks.length; i++) {
+            if (Emitter.sameAs(fn, callbacks[i])) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     private static boolean sameAs(Listener fn, Listener internal) {
@@ -111,10 +138,10 @@ public class Emitter {
      * @return a reference to this object.
      */
     public Emitter emit(String event, Object... args) {
-        ConcurrentLinkedQueue<Listener> callbacks = this.callbacks.get(event);
+        Listener[] callbacks = this.callbacks.get(event);
         if (callbacks != null) {
-            for (Listener fn : callbacks) {
-                fn.call(args);
+            for (int i = 0; i < callbacks.length; i++) {
+                callbacks[i].call(args);
             }
         }
         return this;
@@ -127,9 +154,9 @@ public class Emitter {
      * @return a reference to this object.
      */
     public List<Listener> listeners(String event) {
-        ConcurrentLinkedQueue<Listener> callbacks = this.callbacks.get(event);
+        Listener[] callbacks = this.callbacks.get(event);
         return callbacks != null ?
-                new ArrayList<Listener>(callbacks) : new ArrayList<Listener>(0);
+                new ArrayList<Listener>(Arrays.asList(callbacks)) : new ArrayList<Listener>(0);
     }
 
     /**
@@ -139,8 +166,7 @@ public class Emitter {
      * @return a reference to this object.
      */
     public boolean hasListeners(String event) {
-        ConcurrentLinkedQueue<Listener> callbacks = this.callbacks.get(event);
-        return callbacks != null && !callbacks.isEmpty();
+        return this.callbacks.get(event) != null;
     }
 
     public static interface Listener {
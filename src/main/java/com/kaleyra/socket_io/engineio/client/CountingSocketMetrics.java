@@ -0,0 +1,170 @@
+package com.kaleyra.socket_io.engineio.client;
+
+
+import com.kaleyra.socket_io.engineio.parser.PacketType;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Metrics that count every measurement. Thread-safe, so one instance can be shared by sockets
+ * running on different loops. Rates, such as polls per second, are left to the reader, by
+ * sampling the counters over time.
+ */
+public class CountingSocketMetrics implements SocketMetrics {
+
+    private static final int TYPES = PacketType.values().length;
+
+    private final AtomicLongArray packetsSent = new AtomicLongArray(TYPES);
+    private final AtomicLongArray bytesSent = new AtomicLongArray(TYPES);
+    private final AtomicLongArray packetsReceived = new AtomicLongArray(TYPES);
+    private final AtomicLongArray bytesReceived = new AtomicLongArray(TYPES);
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedPackets = new AtomicLong();
+    private final AtomicInteger writeBufferDepth = new AtomicInteger();
+    private final AtomicInteger maxWriteBufferDepth = new AtomicInteger();
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong upgradesStarted = new AtomicLong();
+    private final AtomicLong upgradesSucceeded = new AtomicLong();
+    private final AtomicLong upgradesFailed = new AtomicLong();
+    private final AtomicLong pingTimeouts = new AtomicLong();
+    private final AtomicLong transportErrors = new AtomicLong();
+
+    @Override
+    public void packetSent(PacketType type, long size) {
+        this.packetsSent.incrementAndGet(type.ordinal());
+        this.bytesSent.addAndGet(type.ordinal(), size);
+    }
+
+    @Override
+    public void packetReceived(PacketType type, long size) {
+        this.packetsReceived.incrementAndGet(type.ordinal());
+        this.bytesReceived.addAndGet(type.ordinal(), size);
+    }
+
+    @Override
+    public void flushed(int packets) {
+        this.flushes.incrementAndGet();
+        this.flushedPackets.addAndGet(packets);
+    }
+
+    @Override
+    public void writeBufferChanged(int delta, int packets) {
+        int depth = this.writeBufferDepth.addAndGet(delta);
+        int max;
+        while (depth > (max = this.maxWriteBufferDepth.get())) {
+            if (this.maxWriteBufferDepth.compareAndSet(max, depth)) break;
+        }
+    }
+
+    @Override
+    public void polled() {
+        this.polls.incrementAndGet();
+    }
+
+    @Override
+    public void upgradeStarted(String transport) {
+        this.upgradesStarted.incrementAndGet();
+    }
+
+    @Override
+    public void upgradeSucceeded(String transport) {
+        this.upgradesSucceeded.incrementAndGet();
+    }
+
+    @Override
+    public void upgradeFailed(String transport) {
+        this.upgradesFailed.incrementAndGet();
+    }
+
+    @Override
+    public void pingTimeout() {
+        this.pingTimeouts.incrementAndGet();
+    }
+
+    @Override
+    public void transportError(String transport, Exception err) {
+        this.transportErrors.incrementAndGet();
+    }
+
+    public long packetsSent(PacketType type) {
+        return this.packetsSent.get(type.ordinal());
+    }
+
+    /**
+     * Returns the size of the data sent in bytes, text being counted as UTF-8.
+     *
+     * @param type the packet type.
+     * @return the total size of the data of the packets of {@code type}.
+     */
+    public long bytesSent(PacketType type) {
+        return this.bytesSent.get(type.ordinal());
+    }
+
+    public long packetsReceived(PacketType type) {
+        return this.packetsReceived.get(type.ordinal());
+    }
+
+    /**
+     * Returns the size of the data received in bytes, text being counted as UTF-8.
+     *
+     * @param type the packet type.
+     * @return the total size of the data of the packets of {@code type}.
+     */
+    public long bytesReceived(PacketType type) {
+        return this.bytesReceived.get(type.ordinal());
+    }
+
+    public long flushes() {
+        return this.flushes.get();
+    }
+
+    public long flushedPackets() {
+        return this.flushedPackets.get();
+    }
+
+    /**
+     * Returns the number of packets waiting in the write buffers of the sockets using these
+     * metrics.
+     *
+     * @return the number of packets.
+     */
+    public int writeBufferDepth() {
+        return this.writeBufferDepth.get();
+    }
+
+    /**
+     * Returns the highest {@link #writeBufferDepth()} seen.
+     *
+     * @return the number of packets.
+     */
+    public int maxWriteBufferDepth() {
+        return this.maxWriteBufferDepth.get();
+    }
+
+    public long polls() {
+        return this.polls.get();
+    }
+
+    public long upgradesStarted() {
+        return this.upgradesStarted.get();
+    }
+
+    public long upgradesSucceeded() {
+        return this.upgradesSucceeded.get();
+    }
+
+    public long upgradesFailed() {
+        return this.upgradesFailed.get();
+    }
+
+    public long pingTimeouts() {
+        return this.pingTimeouts.get();
+    }
+
+    public long transportErrors() {
+        return this.transportErrors.get();
+    }
+}
@@ -0,0 +1,355 @@
+package com.kaleyra.socket_io.engineio.client;
+
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Histograms of the phases of the HTTP requests of the polling transport, set with
+ * {@link Socket.Options#httpTimings}. Give each socket its own instance for per-socket
+ * figures, or share one for global figures; requests are also broken down by host.
+ *
+ * Polls and writes are kept apart, since the {@link Phase#WAIT} of a poll is mostly the
+ * time the server held it open, while for a write it is the time the server took to answer.
+ * A connection that was not reused shows in {@link Stats#newConnections()} and in the
+ * {@link Phase#CONNECT} histogram, telling connection churn from server hold time.
+ */
+public class HttpTimings implements EventListener.Factory {
+
+    public enum Phase {
+        /** Resolving the host name. */
+        DNS,
+        /** Opening the connection, TLS included. */
+        CONNECT,
+        /** The TLS handshake. */
+        TLS,
+        /** Writing the request headers and body. */
+        REQUEST,
+        /** From the end of the request to the first byte of the response. */
+        WAIT,
+        /** Reading the response headers and body. */
+        RESPONSE,
+        /** The whole call. */
+        TOTAL
+    }
+
+    private final Stats polls = new Stats();
+    private final Stats writes = new Stats();
+    private final ConcurrentMap<String, Stats> hosts = new ConcurrentHashMap<String, Stats>();
+
+    @Override
+    public EventListener create(Call call) {
+        return new CallTimer();
+    }
+
+    /**
+     * Returns the figures of the poll (GET) requests.
+     *
+     * @return the poll figures.
+     */
+    public Stats polls() {
+        return this.polls;
+    }
+
+    /**
+     * Returns the figures of the write (POST) requests.
+     *
+     * @return the write figures.
+     */
+    public Stats writes() {
+        return this.writes;
+    }
+
+    public Set<String> hosts() {
+        return this.hosts.keySet();
+    }
+
+    /**
+     * Returns the figures of all requests to a host.
+     *
+     * @param host the host name.
+     * @return the figures, or null if no request went to {@code host}.
+     */
+    public Stats host(String host) {
+        return this.hosts.get(host);
+    }
+
+    private Stats hostStats(String host) {
+        Stats stats = this.hosts.get(host);
+        if (stats == null) {
+            stats = new Stats();
+            Stats previous = this.hosts.putIfAbsent(host, stats);
+            if (previous != null) {
+                stats = previous;
+            }
+        }
+        return stats;
+    }
+
+    private void record(Call call, CallTimer timer, boolean failed) {
+        Request request = call.request();
+        Stats methodStats = "GET".equals(request.method()) ? this.polls : this.writes;
+        Stats hostStats = this.hostStats(request.url().host());
+        methodStats.record(timer, failed);
+        hostStats.record(timer, failed);
+    }
+
+    /**
+     * Figures of a set of requests.
+     */
+    public static class Stats {
+
+        private final Histogram[] phases = new Histogram[Phase.values().length];
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong reusedConnections = new AtomicLong();
+        private final AtomicLong newConnections = new AtomicLong();
+
+        Stats() {
+            for (int i = 0; i < this.phases.length; i++) {
+                this.phases[i] = new Histogram();
+            }
+        }
+
+        public Histogram phase(Phase phase) {
+            return this.phases[phase.ordinal()];
+        }
+
+        public long calls() {
+            return this.calls.get();
+        }
+
+        public long failures() {
+            return this.failures.get();
+        }
+
+        /**
+         * Returns the number of calls that ran on a pooled connection.
+         *
+         * @return the number of calls.
+         */
+        public long reusedConnections() {
+            return this.reusedConnections.get();
+        }
+
+        /**
+         * Returns the number of calls that opened a connection.
+         *
+         * @return the number of calls.
+         */
+        public long newConnections() {
+            return this.newConnections.get();
+        }
+
+        private void record(CallTimer timer, boolean failed) {
+            this.calls.incrementAndGet();
+            if (failed) {
+                this.failures.incrementAndGet();
+            }
+            if (timer.connectionAcquired) {
+                if (timer.connectStart != 0) {
+                    this.newConnections.incrementAndGet();
+                } else {
+                    this.reusedConnections.incrementAndGet();
+                }
+            }
+            this.record(Phase.DNS, timer.dnsStart, timer.dnsEnd);
+            this.record(Phase.CONNECT, timer.connectStart, timer.connectEnd);
+            this.record(Phase.TLS, timer.secureConnectStart, timer.secureConnectEnd);
+            this.record(Phase.REQUEST, timer.requestStart, timer.requestEnd);
+            this.record(Phase.WAIT, timer.requestEnd, timer.responseStart);
+            this.record(Phase.RESPONSE, timer.responseStart, timer.responseEnd);
+            this.record(Phase.TOTAL, timer.callStart, timer.callEnd);
+        }
+
+        private void record(Phase phase, long start, long end) {
+            // phases the call did not go through are left out
+            if (start != 0 && end != 0) {
+                this.phases[phase.ordinal()].record(end - start);
+            }
+        }
+    }
+
+    /**
+     * A histogram of durations, with buckets doubling from one microsecond.
+     */
+    public static class Histogram {
+
+        private static final int BUCKETS = 40;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /*package*/ void record(long nanos) {
+            long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            this.buckets.incrementAndGet(bucket);
+            this.count.incrementAndGet();
+            this.sum.addAndGet(nanos);
+            long max;
+            while (nanos > (max = this.max.get())) {
+                if (this.max.compareAndSet(max, nanos)) break;
+            }
+        }
+
+        public long count() {
+            return this.count.get();
+        }
+
+        /**
+         * Returns the mean duration.
+         *
+         * @param unit the unit of the result.
+         * @return the mean, or 0 if nothing was recorded.
+         */
+        public long mean(TimeUnit unit) {
+            long count = this.count.get();
+            return count == 0 ? 0 : unit.convert(this.sum.get() / count, TimeUnit.NANOSECONDS);
+        }
+
+        public long max(TimeUnit unit) {
+            return unit.convert(this.max.get(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns an upper bound of a percentile, at most twice the exact value.
+         *
+         * @param percentile the percentile, between 0 and 100.
+         * @param unit the unit of the result.
+         * @return the upper bound of the bucket holding the percentile.
+         */
+        public long percentile(double percentile, TimeUnit unit) {
+            long count = this.count.get();
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += this.buckets.get(i);
+                if (seen >= rank) {
+                    // bucket i holds durations below 2^i microseconds
+                    return unit.convert(Math.min(1L << i, TimeUnit.NANOSECONDS.toMicros(this.max.get())),
+                            TimeUnit.MICROSECONDS);
+                }
+            }
+            return this.max(unit);
+        }
+    }
+
+    /**
+     * Collects the timestamps of a call; OkHttp calls it from one thread at a time.
+     */
+    private class CallTimer extends EventListener {
+
+        long callStart;
+        long dnsStart;
+        long dnsEnd;
+        long connectStart;
+        long connectEnd;
+        long secureConnectStart;
+        long secureConnectEnd;
+        boolean connectionAcquired;
+        long requestStart;
+        long requestEnd;
+        long responseStart;
+        long responseEnd;
+        long callEnd;
+
+        @Override
+        public void callStart(Call call) {
+            this.callStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            this.dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            this.dnsEnd = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            if (this.connectStart == 0) {
+                this.connectStart = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            this.secureConnectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            this.secureConnectEnd = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            this.connectEnd = System.nanoTime();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            this.connectionAcquired = true;
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            this.requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            this.requestEnd = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            this.requestEnd = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            this.responseStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            this.responseEnd = System.nanoTime();
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            this.callEnd = System.nanoTime();
+            HttpTimings.this.record(call, this, false);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            this.callEnd = System.nanoTime();
+            HttpTimings.this.record(call, this, true);
+        }
+    }
+}
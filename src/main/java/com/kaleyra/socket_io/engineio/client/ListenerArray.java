@@ -0,0 +1,64 @@
+package com.kaleyra.socket_io.engineio.client;
+
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Listeners of one type, kept as {@link com.kaleyra.socket_io.emitter.Emitter} keeps those
+ * of an event: adding or removing one swaps in a new array with a compare-and-set, so
+ * dispatching is a plain loop over {@link #get()}.
+ */
+final class ListenerArray<T> {
+
+    private final AtomicReference<T[]> listeners;
+
+    ListenerArray(T[] empty) {
+        this.listeners = new AtomicReference<T[]>(empty);
+    }
+
+    /**
+     * Returns the current listeners. The array must not be modified.
+     *
+     * @return the listeners, in the order they were added.
+     */
+    T[] get() {
+        return this.listeners.get();
+    }
+
+    void add(T fn) {
+        if (fn == null) {
+            throw new NullPointerException("fn");
+        }
+        for (;;) {
+            T[] listeners = this.listeners.get();
+            T[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+            newListeners[listeners.length] = fn;
+            if (this.listeners.compareAndSet(listeners, newListeners)) {
+                return;
+            }
+        }
+    }
+
+    void remove(T fn) {
+        for (;;) {
+            T[] listeners = this.listeners.get();
+            int index = -1;
+            for (int i = 0; i < listeners.length; i++) {
+                if (listeners[i].equals(fn)) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+            T[] newListeners = Arrays.copyOf(listeners, listeners.length - 1);
+            System.arraycopy(listeners, index + 1, newListeners, index, newListeners.length - index);
+            if (this.listeners.compareAndSet(listeners, newListeners)) {
+                return;
+            }
+        }
+    }
+}
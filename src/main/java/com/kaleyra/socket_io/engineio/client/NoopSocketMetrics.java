@@ -0,0 +1,43 @@
+package com.kaleyra.socket_io.engineio.client;
+
+
+import com.kaleyra.socket_io.engineio.parser.PacketType;
+
+
+/**
+ * Metrics that ignore every measurement; the default of sockets.
+ */
+public class NoopSocketMetrics implements SocketMetrics {
+
+    public static final NoopSocketMetrics INSTANCE = new NoopSocketMetrics();
+
+    @Override
+    public void packetSent(PacketType type, long size) {}
+
+    @Override
+    public void packetReceived(PacketType type, long size) {}
+
+    @Override
+    public void flushed(int packets) {}
+
+    @Override
+    public void writeBufferChanged(int delta, int packets) {}
+
+    @Override
+    public void polled() {}
+
+    @Override
+    public void upgradeStarted(String transport) {}
+
+    @Override
+    public void upgradeSucceeded(String transport) {}
+
+    @Override
+    public void upgradeFailed(String transport) {}
+
+    @Override
+    public void pingTimeout() {}
+
+    @Override
+    public void transportError(String transport, Exception err) {}
+}
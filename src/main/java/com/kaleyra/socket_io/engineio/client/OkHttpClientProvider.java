@@ -0,0 +1,138 @@
+package com.kaleyra.socket_io.engineio.client;
+
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Provides the OkHttpClient used by sockets and transports that are not given a
+ * {@code callFactory} or {@code webSocketFactory}. The client is built once and shared, so
+ * all of them share its dispatcher and connection pool; no client is ever created per
+ * socket or per request.
+ */
+public class OkHttpClientProvider {
+
+    private static volatile OkHttpClientProvider defaultProvider;
+
+    private final Options options;
+    private volatile OkHttpClient client;
+
+    public OkHttpClientProvider() {
+        this(new Options());
+    }
+
+    public OkHttpClientProvider(Options opts) {
+        this.options = opts;
+    }
+
+    /**
+     * Returns the provider used when no factory is configured.
+     *
+     * @return the default provider.
+     */
+    public static OkHttpClientProvider getDefault() {
+        OkHttpClientProvider provider = defaultProvider;
+        if (provider == null) {
+            synchronized (OkHttpClientProvider.class) {
+                provider = defaultProvider;
+                if (provider == null) {
+                    provider = defaultProvider = new OkHttpClientProvider();
+                }
+            }
+        }
+        return provider;
+    }
+
+    /**
+     * Sets the provider used when no factory is configured. Sockets created before keep
+     * the client they already use.
+     *
+     * @param provider the new default provider.
+     */
+    public static void setDefault(OkHttpClientProvider provider) {
+        defaultProvider = provider;
+    }
+
+    /**
+     * Returns the shared client, building it on the first call.
+     *
+     * @return the client of this provider.
+     */
+    public OkHttpClient client() {
+        OkHttpClient client = this.client;
+        if (client == null) {
+            synchronized (this) {
+                client = this.client;
+                if (client == null) {
+                    client = this.client = this.createClient();
+                }
+            }
+        }
+        return client;
+    }
+
+    protected OkHttpClient createClient() {
+        Options opts = this.options;
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(opts.maxRequests);
+        dispatcher.setMaxRequestsPerHost(opts.maxRequestsPerHost);
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(opts.maxIdleConnections, opts.keepAliveDuration, TimeUnit.MILLISECONDS))
+                .readTimeout(opts.readTimeout, TimeUnit.MILLISECONDS);
+
+        if (opts.http2PriorKnowledge) {
+            builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        } else {
+            builder.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        }
+        return builder.build();
+    }
+
+    public static class Options {
+
+        /**
+         * Maximum number of requests running at once. Every polling socket keeps a GET
+         * open and may have {@link Transport.Options#maxPendingWrites} POSTs in flight.
+         */
+        public int maxRequests = 512;
+
+        /**
+         * Maximum number of requests running at once to a single host. OkHttp's own default
+         * of 5 would queue the requests of the sixth polling socket to the same host.
+         */
+        public int maxRequestsPerHost = 512;
+
+        /**
+         * Maximum number of idle connections kept in the pool.
+         */
+        public int maxIdleConnections = 32;
+
+        /**
+         * Time in milliseconds an idle connection is kept in the pool.
+         */
+        public long keepAliveDuration = TimeUnit.MINUTES.toMillis(5);
+
+        /**
+         * Read timeout in milliseconds. Must be longer than the ping interval of the
+         * server, for which a long-poll may wait.
+         */
+        public long readTimeout = TimeUnit.MINUTES.toMillis(1);
+
+        /**
+         * Whether to talk HTTP/2 to the server without negotiating it, for cleartext
+         * servers that support it. Otherwise HTTP/2 is preferred when the server offers it
+         * over TLS. WebSocket connections always use HTTP/1.1.
+         */
+        public boolean http2PriorKnowledge;
+    }
+}
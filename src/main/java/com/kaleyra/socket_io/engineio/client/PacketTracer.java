@@ -0,0 +1,40 @@
+package com.kaleyra.socket_io.engineio.client;
+
+
+import com.kaleyra.socket_io.engineio.parser.Packet;
+
+
+/**
+ * Receives the timeline of sampled packets, set with {@link Transport.Options#tracer}. Times
+ * are {@link System#nanoTime()} values, so only their differences are meaningful.
+ *
+ * Methods are called on the event loop of the socket. They must be cheap, must not block and
+ * must not call back into the socket.
+ */
+public interface PacketTracer {
+
+    /**
+     * A sampled message was written. Only messages given to {@link Socket#send} are traced.
+     *
+     * @param packet the packet.
+     * @param sent when {@code send} was called, on the caller's thread.
+     * @param enqueued when the event loop added it to the write buffer.
+     * @param flushed when a flush handed it to the transport; a late flush points to an
+     *                upgrade pause, a batching window or writes already in flight.
+     * @param written when the transport returned from writing it: the frame was queued by
+     *                OkHttp, or the POST request was started.
+     * @param drained when the transport reported it written: the POST request succeeded,
+     *                or OkHttp accepted the frame.
+     */
+    void onPacketSent(Packet packet, long sent, long enqueued, long flushed, long written, long drained);
+
+    /**
+     * A sampled packet was received and handled.
+     *
+     * @param packet the packet.
+     * @param received when the transport read it, on the I/O thread.
+     * @param handled when the event loop began handling the decoded packet.
+     * @param dispatched when the listeners of the packet returned.
+     */
+    void onPacketReceived(Packet packet, long received, long handled, long dispatched);
+}
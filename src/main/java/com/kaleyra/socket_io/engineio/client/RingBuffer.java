@@ -0,0 +1,134 @@
+package com.kaleyra.socket_io.engineio.client;
+
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+
+/**
+ * A growable FIFO queue backed by a circular array. The head of the queue can be handed out
+ * as a read-only {@link #segment(int)} and later dropped in one step with {@link #release(int)}.
+ *
+ * Not thread-safe; the socket only uses it from its event loop.
+ */
+final class RingBuffer<E> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] elements = new Object[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+
+    public void offer(E element) {
+        if (this.size == this.elements.length) {
+            this.grow();
+        }
+        this.elements[(this.head + this.size) & (this.elements.length - 1)] = element;
+        this.size++;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns a view of the first {@code count} elements. The view does not change when
+     * elements are added, and stays valid until those elements are released or cleared.
+     *
+     * @param count number of elements from the head.
+     * @return a read-only list of the elements.
+     */
+    public List<E> segment(int count) {
+        return this.segment(0, count);
+    }
+
+    /**
+     * Returns a view of {@code count} elements starting {@code offset} elements after the
+     * head, with the same guarantees as {@link #segment(int)}.
+     *
+     * @param offset number of elements to skip from the head.
+     * @param count number of elements.
+     * @return a read-only list of the elements.
+     */
+    public List<E> segment(int offset, int count) {
+        if (offset < 0 || count < 0 || offset + count > this.size) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", count: " + count + ", size: " + this.size);
+        }
+        return new Segment<E>(this.elements, (this.head + offset) & (this.elements.length - 1), count);
+    }
+
+    /**
+     * Removes the first {@code count} elements.
+     *
+     * @param count number of elements from the head.
+     */
+    public void release(int count) {
+        if (count < 0 || count > this.size) {
+            throw new IndexOutOfBoundsException("count: " + count + ", size: " + this.size);
+        }
+        int capacity = this.elements.length;
+        int end = this.head + count;
+        if (end <= capacity) {
+            Arrays.fill(this.elements, this.head, end, null);
+        } else {
+            Arrays.fill(this.elements, this.head, capacity, null);
+            Arrays.fill(this.elements, 0, end - capacity, null);
+        }
+        this.head = end & (capacity - 1);
+        this.size -= count;
+    }
+
+    /**
+     * Removes all elements. Segments handed out before stay readable.
+     */
+    public void clear() {
+        // a new array rather than nulling slots, since a transport may still read a segment
+        this.elements = new Object[INITIAL_CAPACITY];
+        this.head = 0;
+        this.size = 0;
+    }
+
+    private void grow() {
+        int capacity = this.elements.length;
+        Object[] elements = new Object[capacity << 1];
+        int tail = capacity - this.head;
+        System.arraycopy(this.elements, this.head, elements, 0, tail);
+        System.arraycopy(this.elements, 0, elements, tail, this.head);
+        // the old array is left as is for segments that still refer to it
+        this.elements = elements;
+        this.head = 0;
+    }
+
+    private static final class Segment<E> extends AbstractList<E> implements RandomAccess {
+
+        private final Object[] elements;
+        private final int start;
+        private final int size;
+
+        Segment(Object[] elements, int start, int size) {
+            this.elements = elements;
+            this.start = start;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("index: " + index + ", size: " + this.size);
+            }
+            return (E) this.elements[(this.start + index) & (this.elements.length - 1)];
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+    }
+}
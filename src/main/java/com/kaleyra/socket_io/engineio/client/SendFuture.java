@@ -0,0 +1,138 @@
+package com.kaleyra.socket_io.engineio.client;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * The result of {@link Socket#sendAsync}. It succeeds once the message is written: when the
+ * request carrying it succeeds with polling, or when the frame is accepted with WebSocket.
+ * It fails if the socket closes before that.
+ */
+public class SendFuture implements Future<Void> {
+
+    private static final Logger logger = Logger.getLogger(SendFuture.class.getName());
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile boolean done;
+    private volatile Exception cause;
+    private List<Callback> callbacks;
+
+    /*package*/ SendFuture() {}
+
+    /**
+     * Adds a callback, called once the send completes. While the send is pending, the callback
+     * later runs on the thread completing it, usually the socket's event loop; if the send
+     * already completed, it runs right away on the calling thread.
+     *
+     * @param callback the callback.
+     * @return a reference to this object.
+     */
+    public SendFuture addCallback(Callback callback) {
+        synchronized (this) {
+            if (!this.done) {
+                if (this.callbacks == null) {
+                    this.callbacks = new ArrayList<Callback>(1);
+                }
+                this.callbacks.add(callback);
+                return this;
+            }
+        }
+        this.call(callback);
+        return this;
+    }
+
+    public boolean isSuccess() {
+        return this.done && this.cause == null;
+    }
+
+    /**
+     * Returns the reason the send failed.
+     *
+     * @return the exception, or null if the send did not fail.
+     */
+    public Exception cause() {
+        return this.cause;
+    }
+
+    /**
+     * A message handed to the socket cannot be taken back, so this does nothing.
+     *
+     * @return false.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.done;
+    }
+
+    @Override
+    public Void get() throws InterruptedException, ExecutionException {
+        this.latch.await();
+        return this.result();
+    }
+
+    @Override
+    public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!this.latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return this.result();
+    }
+
+    private Void result() throws ExecutionException {
+        if (this.cause != null) {
+            throw new ExecutionException(this.cause);
+        }
+        return null;
+    }
+
+    /*package*/ boolean complete(Exception cause) {
+        List<Callback> callbacks;
+        synchronized (this) {
+            if (this.done) return false;
+            this.cause = cause;
+            this.done = true;
+            callbacks = this.callbacks;
+            this.callbacks = null;
+        }
+        this.latch.countDown();
+
+        if (callbacks != null) {
+            for (Callback callback : callbacks) {
+                this.call(callback);
+            }
+        }
+        return true;
+    }
+
+    private void call(Callback callback) {
+        try {
+            callback.onComplete(this);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "SendFuture callback threw exception", e);
+        }
+    }
+
+    public interface Callback {
+
+        void onComplete(SendFuture future);
+    }
+}
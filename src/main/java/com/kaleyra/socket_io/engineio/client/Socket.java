@@ -2,23 +2,33 @@ package com.kaleyra.socket_io.engineio.client;
 
 import com.kaleyra.socket_io.engineio.client.transports.Polling;
 import com.kaleyra.socket_io.engineio.parser.Packet;
+import com.kaleyra.socket_io.engineio.parser.PacketType;
 import com.kaleyra.socket_io.engineio.parser.Parser;
 import org.json.JSONException;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.kaleyra.socket_io.buffer.PooledBuffer;
 import com.kaleyra.socket_io.emitter.Emitter;
 import com.kaleyra.socket_io.engineio.client.transports.PollingXHR;
 import com.kaleyra.socket_io.engineio.client.transports.WebSocket;
 import com.kaleyra.socket_io.parseqs.ParseQS;
+import com.kaleyra.socket_io.thread.EventLoop;
 import com.kaleyra.socket_io.thread.EventThread;
+import com.kaleyra.socket_io.thread.HashedWheelTimer;
+import com.kaleyra.socket_io.thread.SerialEventLoop;
 import okhttp3.OkHttpClient;
+import okio.ByteString;
+import okio.Utf8;
 
 
 /**
@@ -30,10 +40,28 @@ public class Socket extends Emitter {
 
     private static final Logger logger = Logger.getLogger(Socket.class.getName());
 
-    private static final AtomicInteger HEARTBEAT_THREAD_COUNTER = new AtomicInteger();
+    /**
+     * Shared by all sockets for their ping timeouts, which only need a precision of a tick.
+     */
+    private static final HashedWheelTimer HEARTBEAT_TIMER =
+            new HashedWheelTimer("engine.io-client.heartbeat", 100, TimeUnit.MILLISECONDS, 512);
 
     private static final String PROBE_ERROR = "probe error";
 
+    /**
+     * Shared by all sockets that batch messages, to end their batching windows.
+     */
+    private static class BatchScheduler {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "engine.io-client.batch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
 
     private enum ReadyState {
         OPENING, OPEN, CLOSING, CLOSED;
@@ -59,6 +87,14 @@ public class Socket extends Emitter {
      */
     public static final String EVENT_MESSAGE = "message";
 
+    /**
+     * Called when binary data is received from the server, with a read-only {@link ByteBuffer}
+     * over the received bytes. Binary messages still reach {@link #EVENT_MESSAGE} and
+     * {@link #EVENT_DATA} as a {@code byte[]}, but the bytes are only copied to one when those
+     * events, {@link #EVENT_PACKET} or a {@link PacketListener} have listeners.
+     */
+    public static final String EVENT_BINARY = "binary";
+
     /**
      * Called when an error occurs.
      */
@@ -76,6 +112,11 @@ public class Socket extends Emitter {
      */
     public static final String EVENT_DRAIN = "drain";
 
+    /**
+     * Called when the write buffer gets back under the low-water marks after reaching a high-water mark.
+     */
+    public static final String EVENT_WRITABLE = "writable";
+
     public static final String EVENT_HANDSHAKE = "handshake";
     public static final String EVENT_UPGRADING = "upgrading";
     public static final String EVENT_UPGRADE = "upgrade";
@@ -100,7 +141,6 @@ public class Socket extends Emitter {
 
     private static okhttp3.WebSocket.Factory defaultWebSocketFactory;
     private static okhttp3.Call.Factory defaultCallFactory;
-    private static OkHttpClient defaultOkHttpClient;
 
     private boolean secure;
     private boolean upgrade;
@@ -120,22 +160,48 @@ public class Socket extends Emitter {
     private Map<String, Transport.Options> transportOptions;
     private List<String> upgrades;
     private Map<String, String> query;
-    /*package*/ LinkedList<Packet> writeBuffer = new LinkedList<Packet>();
+    /*package*/ RingBuffer<Packet> writeBuffer = new RingBuffer<Packet>();
+    // the callbacks of the packets in writeBuffer, at the same positions
+    private RingBuffer<Runnable> completions = new RingBuffer<Runnable>();
+    // the traces of the packets in writeBuffer, only kept while tracing
+    private RingBuffer<Trace> traces = new RingBuffer<Trace>();
     /*package*/ Transport transport;
-    private Future pingTimeoutTimer;
+    private HashedWheelTimer.Timeout pingTimeoutTimer;
     private okhttp3.WebSocket.Factory webSocketFactory;
     private okhttp3.Call.Factory callFactory;
     private final Map<String, List<String>> extraHeaders;
     private boolean enablePollingCookies;
+    private EventLoop eventLoop;
+    private final long highWaterMark;
+    private final int highWaterPackets;
+    private final AtomicLong bufferedAmount = new AtomicLong();
+    private final AtomicInteger bufferedPackets = new AtomicInteger();
+    private final AtomicBoolean writeBlocked = new AtomicBoolean();
+    private final int maxPendingWrites;
+    private final Queue<Integer> pendingWrites = new ArrayDeque<Integer>();
+    private final SocketMetrics metrics;
+    private final HttpTimings httpTimings;
+    // the client of the polling transport when timing its requests
+    private final okhttp3.Call.Factory timedCallFactory;
+    private final PacketTracer tracer;
+    private final int traceSampleInterval;
+    private final AtomicLong traceCounter = new AtomicLong();
+    private final long batchWindow;
+    private final int batchMaxBytes;
+    private long batchedBytes;
+    private boolean batchScheduled;
+    // counts the flushes, so a window ended early by one does not end the next
+    private int batchGeneration;
 
     private ReadyState readyState;
-    private ScheduledExecutorService heartbeatScheduler;
-    private final Listener onHeartbeatAsListener = new Listener() {
-        @Override
-        public void call(Object... args) {
-            Socket.this.onHeartbeat();
-        }
-    };
+    private final ListenerArray<MessageListener> messageListeners =
+            new ListenerArray<MessageListener>(new MessageListener[0]);
+    private final ListenerArray<BinaryListener> binaryListeners =
+            new ListenerArray<BinaryListener>(new BinaryListener[0]);
+    private final ListenerArray<PacketListener> packetListeners =
+            new ListenerArray<PacketListener>(new PacketListener[0]);
+    private final ListenerArray<CloseListener> closeListeners =
+            new ListenerArray<CloseListener>(new CloseListener[0]);
 
     public Socket() {
         this(new Options());
@@ -207,19 +273,30 @@ public class Socket extends Emitter {
         this.callFactory = opts.callFactory != null ? opts.callFactory : defaultCallFactory;
         this.webSocketFactory = opts.webSocketFactory != null ? opts.webSocketFactory : defaultWebSocketFactory;
         if (callFactory == null) {
-            if (defaultOkHttpClient == null) {
-                defaultOkHttpClient = new OkHttpClient();
-            }
-            callFactory = defaultOkHttpClient;
+            callFactory = OkHttpClientProvider.getDefault().client();
         }
         if (webSocketFactory == null) {
-            if (defaultOkHttpClient == null) {
-                defaultOkHttpClient = new OkHttpClient();
-            }
-            webSocketFactory = defaultOkHttpClient;
+            webSocketFactory = OkHttpClientProvider.getDefault().client();
         }
         this.extraHeaders = opts.extraHeaders;
         this.enablePollingCookies = opts.enablePollingCookies;
+        if (opts.eventLoop != null) {
+            this.eventLoop = opts.eventLoop;
+        } else if (opts.virtualThreads) {
+            this.eventLoop = SerialEventLoop.ofVirtualThreads();
+        } else {
+            this.eventLoop = EventThread.loop(this);
+        }
+        this.metrics = opts.metrics != null ? opts.metrics : NoopSocketMetrics.INSTANCE;
+        this.httpTimings = opts.httpTimings;
+        this.timedCallFactory = this.httpTimings != null ? this.buildTimedCallFactory() : null;
+        this.tracer = opts.tracer;
+        this.traceSampleInterval = Math.max(1, opts.traceSampleInterval);
+        this.highWaterMark = opts.writeBufferHighWaterMark;
+        this.highWaterPackets = opts.writeBufferHighWaterPackets;
+        this.maxPendingWrites = opts.maxPendingWrites;
+        this.batchWindow = opts.batchWindow;
+        this.batchMaxBytes = opts.batchMaxBytes;
     }
 
     public static void setDefaultOkHttpWebSocketFactory(okhttp3.WebSocket.Factory factory) {
@@ -236,7 +313,7 @@ public class Socket extends Emitter {
      * @return a reference to to this object.
      */
     public Socket open() {
-        EventThread.exec(new Runnable() {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 String transportName;
@@ -245,7 +322,7 @@ public class Socket extends Emitter {
                 } else if (0 == Socket.this.transports.size()) {
                     // Emit error on next tick so it can be listened to
                     final Socket self = Socket.this;
-                    EventThread.nextTick(new Runnable() {
+                    self.eventLoop.nextTick(new Runnable() {
                         @Override
                         public void run() {
                             self.emit(Socket.EVENT_ERROR, new EngineIOException("No transports available"));
@@ -264,7 +341,7 @@ public class Socket extends Emitter {
         return this;
     }
 
-    private Transport createTransport(String name) {
+    /*package*/ Transport createTransport(String name) {
         if (logger.isLoggable(Level.FINE)) {
             logger.fine(String.format("creating transport '%s'", name));
         }
@@ -290,10 +367,18 @@ public class Socket extends Emitter {
         opts.timestampRequests = options != null ? options.timestampRequests : this.timestampRequests;
         opts.timestampParam = options != null ? options.timestampParam : this.timestampParam;
         opts.policyPort = options != null ? options.policyPort : this.policyPort;
-        opts.callFactory = options != null ? options.callFactory : this.callFactory;
-        opts.webSocketFactory = options != null ? options.webSocketFactory : this.webSocketFactory;
+        opts.callFactory = options != null && options.callFactory != null ? options.callFactory : this.callFactory;
+        opts.webSocketFactory = options != null && options.webSocketFactory != null ? options.webSocketFactory : this.webSocketFactory;
         opts.extraHeaders = this.extraHeaders;
         opts.enablePollingCookies = this.enablePollingCookies;
+        opts.eventLoop = this.eventLoop;
+        opts.maxPendingWrites = options != null ? options.maxPendingWrites : this.maxPendingWrites;
+        opts.metrics = this.metrics;
+        opts.tracer = this.tracer;
+        opts.traceSampleInterval = this.traceSampleInterval;
+        if (this.timedCallFactory != null && Polling.NAME.equals(name)) {
+            opts.callFactory = this.timedCallFactory;
+        }
 
         Transport transport;
         if (WebSocket.NAME.equals(name)) {
@@ -309,6 +394,20 @@ public class Socket extends Emitter {
         return transport;
     }
 
+    private okhttp3.Call.Factory buildTimedCallFactory() {
+        Transport.Options options = this.transportOptions.get(Polling.NAME);
+        okhttp3.Call.Factory callFactory = options != null && options.callFactory != null ?
+                options.callFactory : this.callFactory;
+        if (!(callFactory instanceof OkHttpClient)) {
+            logger.fine("callFactory is not an OkHttpClient - no http timings");
+            return callFactory;
+        }
+        // shares the dispatcher and connection pool of the client
+        return ((OkHttpClient) callFactory).newBuilder()
+                .eventListenerFactory(this.httpTimings)
+                .build();
+    }
+
     private void setTransport(Transport transport) {
         if (logger.isLoggable(Level.FINE)) {
             logger.fine(String.format("setting transport %s", transport.name));
@@ -354,6 +453,7 @@ public class Socket extends Emitter {
         final Transport[] transport = new Transport[] {this.createTransport(name)};
         final boolean[] failed = new boolean[] {false};
         final Socket self = this;
+        this.metrics.upgradeStarted(name);
 
         Socket.priorWebsocketSuccess = false;
 
@@ -367,7 +467,7 @@ public class Socket extends Emitter {
                 if (logger.isLoggable(Level.FINE)) {
                     logger.fine(String.format("probe transport '%s' opened", name));
                 }
-                Packet<String> packet = new Packet<String>(Packet.PING, "probe");
+                Packet<String> packet = new Packet<String>(PacketType.PING, "probe");
                 transport[0].send(new Packet[] {packet});
                 transport[0].once(Transport.EVENT_PACKET, new Listener() {
                     @Override
@@ -375,7 +475,7 @@ public class Socket extends Emitter {
                         if (failed[0]) return;
 
                         Packet msg = (Packet)args[0];
-                        if (Packet.PONG.equals(msg.type) && "probe".equals(msg.data)) {
+                        if (msg.packetType() == PacketType.PONG && "probe".equals(msg.data)) {
                             if (logger.isLoggable(Level.FINE)) {
                                 logger.fine(String.format("probe transport '%s' pong", name));
                             }
@@ -398,8 +498,9 @@ public class Socket extends Emitter {
                                     cleanup[0].run();
 
                                     self.setTransport(transport[0]);
-                                    Packet packet = new Packet(Packet.UPGRADE);
+                                    Packet packet = new Packet(PacketType.UPGRADE);
                                     transport[0].send(new Packet[]{packet});
+                                    self.metrics.upgradeSucceeded(name);
                                     self.emit(EVENT_UPGRADE, transport[0]);
                                     transport[0] = null;
                                     self.upgrading = false;
@@ -412,6 +513,7 @@ public class Socket extends Emitter {
                             }
                             EngineIOException err = new EngineIOException(PROBE_ERROR);
                             err.transport = transport[0].name;
+                            self.metrics.upgradeFailed(name);
                             self.emit(EVENT_UPGRADE_ERROR, err);
                         }
                     }
@@ -454,6 +556,7 @@ public class Socket extends Emitter {
                     logger.fine(String.format("probe transport \"%s\" failed because of error: %s", name, err));
                 }
 
+                self.metrics.upgradeFailed(name);
                 self.emit(EVENT_UPGRADE_ERROR, error);
             }
         };
@@ -531,30 +634,58 @@ public class Socket extends Emitter {
                 logger.fine(String.format("socket received: type '%s', data '%s'", packet.type, packet.data));
             }
 
-            this.emit(EVENT_PACKET, packet);
-            this.emit(EVENT_HEARTBEAT);
+            PacketListener[] packetListeners = this.packetListeners.get();
+            if (packet.data instanceof ByteString
+                    && (packetListeners.length > 0 || this.hasListeners(EVENT_PACKET)
+                        || this.hasListeners(EVENT_DATA) || this.hasListeners(EVENT_MESSAGE))) {
+                // the other events have always been given a byte[]
+                packet.data = ((ByteString) packet.data).toByteArray();
+            }
 
-            if (Packet.OPEN.equals(packet.type)) {
-                try {
-                    this.onHandshake(new HandshakeData((String)packet.data));
-                } catch (JSONException e) {
-                    this.emit(EVENT_ERROR, new EngineIOException(e));
-                }
-            } else if (Packet.PING.equals(packet.type)) {
-                this.emit(EVENT_PING);
-                EventThread.exec(new Runnable() {
-                    @Override
-                    public void run() {
-                        Socket.this.sendPacket(Packet.PONG, null);
+            // events nobody listens to are skipped, saving their argument arrays
+            if (this.hasListeners(EVENT_PACKET)) {
+                this.emit(EVENT_PACKET, packet);
+            }
+            for (int i = 0; i < packetListeners.length; i++) {
+                packetListeners[i].onPacket(packet);
+            }
+            // any packet proves the connection alive, once the handshake set the deadline
+            if (this.pingTimeoutTimer != null) {
+                this.onHeartbeat();
+            }
+            if (this.hasListeners(EVENT_HEARTBEAT)) {
+                this.emit(EVENT_HEARTBEAT);
+            }
+
+            PacketType type = packet.packetType();
+            if (type == null) return;
+            switch (type) {
+                case OPEN:
+                    try {
+                        this.onHandshake(new HandshakeData((String)packet.data));
+                    } catch (JSONException e) {
+                        this.emit(EVENT_ERROR, new EngineIOException(e));
                     }
-                });
-            } else if (Packet.ERROR.equals(packet.type)) {
-                EngineIOException err = new EngineIOException("server error");
-                err.code = packet.data;
-                this.onError(err);
-            } else if (Packet.MESSAGE.equals(packet.type)) {
-                this.emit(EVENT_DATA, packet.data);
-                this.emit(EVENT_MESSAGE, packet.data);
+                    break;
+                case PING:
+                    this.emit(EVENT_PING);
+                    this.eventLoop.exec(new Runnable() {
+                        @Override
+                        public void run() {
+                            Socket.this.sendPacket(PacketType.PONG, null);
+                        }
+                    });
+                    break;
+                case ERROR:
+                    EngineIOException err = new EngineIOException("server error");
+                    err.code = packet.data;
+                    this.onError(err);
+                    break;
+                case MESSAGE:
+                    this.onMessage(packet.data);
+                    break;
+                default:
+                    break;
             }
         } else {
             if (logger.isLoggable(Level.FINE)) {
@@ -563,6 +694,43 @@ public class Socket extends Emitter {
         }
     }
 
+    private void onMessage(Object data) {
+        if (data instanceof String) {
+            MessageListener[] messageListeners = this.messageListeners.get();
+            for (int i = 0; i < messageListeners.length; i++) {
+                messageListeners[i].onMessage((String) data);
+            }
+        } else if (Parser.isBinary(data)) {
+            BinaryListener[] binaryListeners = this.binaryListeners.get();
+            if (binaryListeners.length > 0) {
+                ByteBuffer buffer = readOnlyBuffer(data);
+                for (int i = 0; i < binaryListeners.length; i++) {
+                    // each listener reads from the start
+                    binaryListeners[i].onBinary(i == 0 ? buffer : buffer.duplicate());
+                }
+            }
+            if (this.hasListeners(EVENT_BINARY)) {
+                this.emit(EVENT_BINARY, readOnlyBuffer(data));
+            }
+        }
+        if (this.hasListeners(EVENT_DATA)) {
+            this.emit(EVENT_DATA, data);
+        }
+        if (this.hasListeners(EVENT_MESSAGE)) {
+            this.emit(EVENT_MESSAGE, data);
+        }
+    }
+
+    private static ByteBuffer readOnlyBuffer(Object data) {
+        if (data instanceof ByteString) {
+            return ((ByteString) data).asByteBuffer();
+        } else if (data instanceof ByteBuffer) {
+            return ((ByteBuffer) data).asReadOnlyBuffer();
+        } else {
+            return ByteBuffer.wrap((byte[]) data).asReadOnlyBuffer();
+        }
+    }
+
     private void onHandshake(HandshakeData data) {
         this.emit(EVENT_HANDSHAKE, data);
         this.id = data.sid;
@@ -574,26 +742,25 @@ public class Socket extends Emitter {
         // In case open handler closes socket
         if (ReadyState.CLOSED == this.readyState) return;
         this.onHeartbeat();
-
-        this.off(EVENT_HEARTBEAT, this.onHeartbeatAsListener);
-        this.on(EVENT_HEARTBEAT, this.onHeartbeatAsListener);
     }
 
     private void onHeartbeat() {
-        if (this.pingTimeoutTimer != null) {
-            pingTimeoutTimer.cancel(false);
-        }
-
         long timeout = this.pingInterval + this.pingTimeout;
 
+        // called for every packet, so the deadline is pushed back in place
+        if (this.pingTimeoutTimer != null && this.pingTimeoutTimer.refresh(timeout, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+
         final Socket self = this;
-        this.pingTimeoutTimer = this.getHeartbeatScheduler().schedule(new Runnable() {
+        this.pingTimeoutTimer = HEARTBEAT_TIMER.newTimeout(new Runnable() {
             @Override
             public void run() {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
                         if (self.readyState == ReadyState.CLOSED) return;
+                        self.metrics.pingTimeout();
                         self.onClose("ping timeout");
                     }
                 });
@@ -602,27 +769,87 @@ public class Socket extends Emitter {
     }
 
     private void onDrain() {
-        for (int i = 0; i < this.prevBufferLen; i++) {
-            this.writeBuffer.poll();
+        // transports drain their writes in the order they were sent
+        Integer written = this.pendingWrites.poll();
+        int count = written != null ? written : 0;
+        if (this.tracer != null) {
+            this.traceDrained(count);
+        }
+        for (Packet packet : this.writeBuffer.segment(count)) {
+            this.release(packet);
+            recycle(packet);
+        }
+        this.writeBuffer.release(count);
+
+        // callbacks may send, so they run once the buffers are consistent
+        List<Runnable> callbacks = null;
+        for (Runnable fn : this.completions.segment(count)) {
+            if (fn != null) {
+                if (callbacks == null) {
+                    callbacks = new ArrayList<Runnable>();
+                }
+                callbacks.add(fn);
+            }
+        }
+        this.completions.release(count);
+        if (this.tracer != null) {
+            this.traces.release(count);
         }
+        this.metrics.writeBufferChanged(-count, this.writeBuffer.size());
 
-        this.prevBufferLen = 0;
+        this.prevBufferLen -= count;
+        this.checkWritable();
         if (0 == this.writeBuffer.size()) {
-            this.emit(EVENT_DRAIN);
-        } else {
+            if (this.hasListeners(EVENT_DRAIN)) {
+                this.emit(EVENT_DRAIN);
+            }
+        } else if (!this.batchScheduled) {
+            // otherwise the end of the batching window flushes
             this.flush();
         }
+
+        if (callbacks != null) {
+            for (Runnable fn : callbacks) {
+                fn.run();
+            }
+        }
     }
 
     private void flush() {
         if (this.readyState != ReadyState.CLOSED && this.transport.writable &&
-                !this.upgrading && this.writeBuffer.size() != 0) {
+                !this.upgrading && this.writeBuffer.size() > this.prevBufferLen) {
+            // packets before prevBufferLen are already being written
+            int count = this.writeBuffer.size() - this.prevBufferLen;
             if (logger.isLoggable(Level.FINE)) {
-                logger.fine(String.format("flushing %d packets in socket", this.writeBuffer.size()));
+                logger.fine(String.format("flushing %d packets in socket", count));
+            }
+            List<Packet> packets = this.writeBuffer.segment(this.prevBufferLen, count);
+            List<Trace> traces = this.tracer != null ? this.traces.segment(this.prevBufferLen, count) : null;
+            this.prevBufferLen += count;
+            this.pendingWrites.offer(count);
+            this.batchedBytes = 0;
+            this.batchScheduled = false;
+            this.batchGeneration++;
+            this.metrics.flushed(count);
+            if (traces != null) {
+                long now = System.nanoTime();
+                for (int i = 0; i < traces.size(); i++) {
+                    Trace trace = traces.get(i);
+                    if (trace != null) trace.flushed = now;
+                }
+            }
+            this.transport.send(packets);
+            if (traces != null) {
+                // the transport writes on this loop, so it is done with them
+                long now = System.nanoTime();
+                for (int i = 0; i < traces.size(); i++) {
+                    Trace trace = traces.get(i);
+                    if (trace != null) trace.written = now;
+                }
+            }
+            if (this.hasListeners(EVENT_FLUSH)) {
+                this.emit(EVENT_FLUSH);
             }
-            this.prevBufferLen = this.writeBuffer.size();
-            this.transport.send(this.writeBuffer.toArray(new Packet[this.writeBuffer.size()]));
-            this.emit(EVENT_FLUSH);
         }
     }
 
@@ -662,62 +889,417 @@ public class Socket extends Emitter {
      * @param fn callback to be called on drain
      */
     public void send(final String msg, final Runnable fn) {
-        EventThread.exec(new Runnable() {
+        this.acquire(msg != null ? msg.length() : 0);
+        final Trace trace = this.newTrace();
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
-                Socket.this.sendPacket(Packet.MESSAGE, msg, fn);
+                Socket.this.sendPacket(new Packet<String>(PacketType.MESSAGE, msg), fn, trace);
             }
         });
     }
 
     public void send(final byte[] msg, final Runnable fn) {
-        EventThread.exec(new Runnable() {
+        this.acquire(msg != null ? msg.length : 0);
+        final Trace trace = this.newTrace();
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
-                Socket.this.sendPacket(Packet.MESSAGE, msg, fn);
+                Socket.this.sendPacket(new Packet<byte[]>(PacketType.MESSAGE, msg), fn, trace);
             }
         });
     }
 
-    private void sendPacket(String type, Runnable fn) {
-        this.sendPacket(new Packet(type), fn);
+    public void send(ByteBuffer msg) {
+        this.send(msg, null);
+    }
+
+    /**
+     * Sends the bytes between the position and the limit of {@code msg} as a binary message.
+     * The buffer is not copied when sent, but read when the transport writes it: over
+     * WebSocket its bytes are then copied into a frame, and with polling they are encoded to
+     * Base64. The position of {@code msg} is left unchanged, and its content must not change
+     * until {@code fn} is called. Use {@link #send(ByteString, Runnable)} to send without a
+     * copy over WebSocket.
+     *
+     * @param msg
+     * @param fn callback to be called on drain
+     */
+    public void send(ByteBuffer msg, final Runnable fn) {
+        final ByteBuffer data = msg.slice();
+        this.acquire(data.remaining());
+        final Trace trace = this.newTrace();
+        this.eventLoop.exec(new Runnable() {
+            @Override
+            public void run() {
+                Socket.this.sendPacket(new Packet<ByteBuffer>(PacketType.MESSAGE, data), fn, trace);
+            }
+        });
     }
 
-    private void sendPacket(String type, String data, Runnable fn) {
-        Packet<String> packet = new Packet<String>(type, data);
-        sendPacket(packet, fn);
+    public void send(PooledBuffer msg) {
+        this.send(msg, null);
+    }
+
+    /**
+     * Sends the bytes between the position and the limit of a pooled buffer as a binary
+     * message. Ownership of the buffer goes to the socket, which releases it to its pool once
+     * the transport has written it, or when it is dropped on close. A buffer still being
+     * written when the socket closes is not released.
+     *
+     * @param msg
+     * @param fn callback to be called on drain
+     */
+    public void send(final PooledBuffer msg, final Runnable fn) {
+        this.acquire(msg.buffer().remaining());
+        final Trace trace = this.newTrace();
+        this.eventLoop.exec(new Runnable() {
+            @Override
+            public void run() {
+                Socket.this.sendPacket(new Packet<PooledBuffer>(PacketType.MESSAGE, msg), fn, trace);
+            }
+        });
     }
 
-    private void sendPacket(String type, byte[] data, Runnable fn) {
-        Packet<byte[]> packet = new Packet<byte[]>(type, data);
-        sendPacket(packet, fn);
+    public void send(ByteString msg) {
+        this.send(msg, null);
     }
 
-    private void sendPacket(Packet packet, final Runnable fn) {
-        if (ReadyState.CLOSING == this.readyState || ReadyState.CLOSED == this.readyState) {
-            return;
+    /**
+     * Sends a binary message. Over WebSocket the ByteString is handed to OkHttp as is, so
+     * no copy of the bytes is made; with polling they are encoded to Base64.
+     *
+     * @param msg
+     * @param fn callback to be called on drain
+     */
+    public void send(final ByteString msg, final Runnable fn) {
+        this.acquire(msg.size());
+        final Trace trace = this.newTrace();
+        this.eventLoop.exec(new Runnable() {
+            @Override
+            public void run() {
+                Socket.this.sendPacket(new Packet<ByteString>(PacketType.MESSAGE, msg), fn, trace);
+            }
+        });
+    }
+
+    /**
+     * Sends a message.
+     *
+     * @param msg
+     * @return a future completed once the message is written, or failed if the socket
+     * closes before.
+     */
+    public SendFuture sendAsync(String msg) {
+        SendFuture future = new SendFuture();
+        this.send(msg, new FutureCompletion(future));
+        return future;
+    }
+
+    public SendFuture sendAsync(byte[] msg) {
+        SendFuture future = new SendFuture();
+        this.send(msg, new FutureCompletion(future));
+        return future;
+    }
+
+    public SendFuture sendAsync(ByteBuffer msg) {
+        SendFuture future = new SendFuture();
+        this.send(msg, new FutureCompletion(future));
+        return future;
+    }
+
+    public SendFuture sendAsync(PooledBuffer msg) {
+        SendFuture future = new SendFuture();
+        this.send(msg, new FutureCompletion(future));
+        return future;
+    }
+
+    public SendFuture sendAsync(ByteString msg) {
+        SendFuture future = new SendFuture();
+        this.send(msg, new FutureCompletion(future));
+        return future;
+    }
+
+    /**
+     * Sends a message unless the write buffer is over a high-water mark.
+     *
+     * @param msg
+     * @return false if the message was not queued, see {@link #writable()}.
+     */
+    public boolean trySend(String msg) {
+        return this.trySend(msg, null);
+    }
+
+    /**
+     * Sends a message unless the write buffer is over a high-water mark.
+     *
+     * @param msg
+     * @param fn callback to be called on drain
+     * @return false if the message was not queued, see {@link #writable()}.
+     */
+    public boolean trySend(String msg, Runnable fn) {
+        if (!this.writable()) {
+            this.blockWrites();
+            return false;
         }
+        this.send(msg, fn);
+        return true;
+    }
 
-        this.emit(EVENT_PACKET_CREATE, packet);
-        this.writeBuffer.offer(packet);
-        if (null != fn) {
-            this.once(EVENT_FLUSH, new Listener() {
+    public boolean trySend(byte[] msg) {
+        return this.trySend(msg, null);
+    }
+
+    public boolean trySend(byte[] msg, Runnable fn) {
+        if (!this.writable()) {
+            this.blockWrites();
+            return false;
+        }
+        this.send(msg, fn);
+        return true;
+    }
+
+    public boolean trySend(ByteBuffer msg) {
+        return this.trySend(msg, null);
+    }
+
+    public boolean trySend(ByteBuffer msg, Runnable fn) {
+        if (!this.writable()) {
+            this.blockWrites();
+            return false;
+        }
+        this.send(msg, fn);
+        return true;
+    }
+
+    /**
+     * Sends a pooled buffer unless the write buffer is over a high-water mark. The caller
+     * keeps ownership of the buffer if it is not sent.
+     *
+     * @param msg
+     * @return false if the message was not queued, see {@link #writable()}.
+     */
+    public boolean trySend(PooledBuffer msg) {
+        return this.trySend(msg, null);
+    }
+
+    public boolean trySend(PooledBuffer msg, Runnable fn) {
+        if (!this.writable()) {
+            this.blockWrites();
+            return false;
+        }
+        this.send(msg, fn);
+        return true;
+    }
+
+    public boolean trySend(ByteString msg) {
+        return this.trySend(msg, null);
+    }
+
+    public boolean trySend(ByteString msg, Runnable fn) {
+        if (!this.writable()) {
+            this.blockWrites();
+            return false;
+        }
+        this.send(msg, fn);
+        return true;
+    }
+
+    /**
+     * Whether the messages waiting to be written are under the high-water marks set with
+     * {@link Options#writeBufferHighWaterMark} and {@link Options#writeBufferHighWaterPackets}.
+     * Once this turns false, {@link #EVENT_WRITABLE} is emitted when the buffer drains
+     * under the low-water marks.
+     *
+     * @return true if messages can be sent without exceeding the limits.
+     */
+    public boolean writable() {
+        return (this.highWaterMark <= 0 || this.bufferedAmount.get() < this.highWaterMark)
+                && (this.highWaterPackets <= 0 || this.bufferedPackets.get() < this.highWaterPackets);
+    }
+
+    /**
+     * Returns the size of the messages sent but not written yet, in bytes for binary and
+     * characters for text messages.
+     *
+     * @return the buffered amount.
+     */
+    public long bufferedAmount() {
+        return this.bufferedAmount.get();
+    }
+
+    /*package*/ static int sizeOf(Packet packet) {
+        if (packet.data instanceof String) {
+            return ((String) packet.data).length();
+        } else if (packet.data instanceof byte[]) {
+            return ((byte[]) packet.data).length;
+        } else if (packet.data instanceof ByteBuffer) {
+            return ((ByteBuffer) packet.data).remaining();
+        } else if (packet.data instanceof ByteString) {
+            return ((ByteString) packet.data).size();
+        } else if (packet.data instanceof PooledBuffer) {
+            return ((PooledBuffer) packet.data).buffer().remaining();
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the size of the data of a packet in bytes, text being counted as UTF-8, unlike
+     * {@link #sizeOf} which counts characters.
+     */
+    /*package*/ static long byteSizeOf(Packet packet) {
+        if (packet.data instanceof String) {
+            return Utf8.size((String) packet.data);
+        }
+        return sizeOf(packet);
+    }
+
+    private void acquire(int size) {
+        this.bufferedAmount.addAndGet(size);
+        this.bufferedPackets.incrementAndGet();
+        if (!this.writable()) {
+            this.blockWrites();
+        }
+    }
+
+    private void release(Packet packet) {
+        // only messages are accounted, see send()
+        if (packet != null && packet.packetType() == PacketType.MESSAGE) {
+            this.bufferedAmount.addAndGet(-sizeOf(packet));
+            this.bufferedPackets.decrementAndGet();
+        }
+    }
+
+    private static void recycle(Packet packet) {
+        if (packet != null && packet.data instanceof PooledBuffer) {
+            try {
+                ((PooledBuffer) packet.data).release();
+            } catch (IllegalStateException e) {
+                // released by its owner after sending it; the write buffer must stay in step
+                // with the other rings, so this is only logged
+                logger.log(Level.WARNING, "pooled buffer released while it was being sent", e);
+            }
+        }
+    }
+
+    private Trace newTrace() {
+        if (this.tracer == null || this.traceCounter.incrementAndGet() % this.traceSampleInterval != 0) {
+            return null;
+        }
+        Trace trace = new Trace();
+        trace.sent = System.nanoTime();
+        return trace;
+    }
+
+    private void traceDrained(int count) {
+        List<Trace> traces = this.traces.segment(count);
+        List<Packet> packets = this.writeBuffer.segment(count);
+        long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Trace trace = traces.get(i);
+            if (trace != null) {
+                this.tracer.onPacketSent(packets.get(i), trace.sent, trace.enqueued, trace.flushed, trace.written, now);
+            }
+        }
+    }
+
+    private static void fail(Runnable fn) {
+        // plain callbacks are only called for written messages
+        if (fn instanceof FutureCompletion) {
+            ((FutureCompletion) fn).future.complete(new EngineIOException("socket closed"));
+        }
+    }
+
+    private void blockWrites() {
+        if (this.writeBlocked.compareAndSet(false, true)) {
+            // the buffer may have drained before the flag was set
+            this.eventLoop.exec(new Runnable() {
                 @Override
-                public void call(Object... args) {
-                    fn.run();
+                public void run() {
+                    Socket.this.checkWritable();
                 }
             });
         }
+    }
+
+    private void checkWritable() {
+        if (!this.writeBlocked.get()) return;
+        if ((this.highWaterMark <= 0 || this.bufferedAmount.get() <= this.highWaterMark / 2)
+                && (this.highWaterPackets <= 0 || this.bufferedPackets.get() <= this.highWaterPackets / 2)
+                && this.writeBlocked.compareAndSet(true, false)
+                && this.readyState != ReadyState.CLOSED) {
+            this.emit(EVENT_WRITABLE);
+        }
+    }
+
+    private void sendPacket(PacketType type, Runnable fn) {
+        this.sendPacket(new Packet(type), fn);
+    }
+
+    private void sendPacket(Packet packet, Runnable fn) {
+        this.sendPacket(packet, fn, null);
+    }
+
+    private void sendPacket(Packet packet, Runnable fn, Trace trace) {
+        if (ReadyState.CLOSING == this.readyState || ReadyState.CLOSED == this.readyState) {
+            this.release(packet);
+            recycle(packet);
+            fail(fn);
+            this.checkWritable();
+            return;
+        }
+
+        if (this.hasListeners(EVENT_PACKET_CREATE)) {
+            this.emit(EVENT_PACKET_CREATE, packet);
+        }
+        this.writeBuffer.offer(packet);
+        this.completions.offer(fn);
+        if (this.tracer != null) {
+            if (trace != null) {
+                trace.enqueued = System.nanoTime();
+            }
+            this.traces.offer(trace);
+        }
+        this.metrics.writeBufferChanged(1, this.writeBuffer.size());
+
+        if (this.batchWindow > 0 && packet.packetType() == PacketType.MESSAGE) {
+            this.batchedBytes += sizeOf(packet);
+            if (this.batchMaxBytes <= 0 || this.batchedBytes < this.batchMaxBytes) {
+                this.scheduleBatchFlush();
+                return;
+            }
+        }
         this.flush();
     }
 
+    private void scheduleBatchFlush() {
+        if (this.batchScheduled) return;
+        this.batchScheduled = true;
+
+        final Socket self = this;
+        final int generation = this.batchGeneration;
+        BatchScheduler.INSTANCE.schedule(new Runnable() {
+            @Override
+            public void run() {
+                self.eventLoop.exec(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (self.batchGeneration != generation) return;
+                        self.batchScheduled = false;
+                        self.flush();
+                    }
+                });
+            }
+        }, this.batchWindow, TimeUnit.MICROSECONDS);
+    }
+
     /**
      * Disconnects the client.
      *
      * @return a reference to to this object.
      */
     public Socket close() {
-        EventThread.exec(new Runnable() {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 if (Socket.this.readyState == ReadyState.OPENING || Socket.this.readyState == ReadyState.OPEN) {
@@ -797,10 +1379,8 @@ public class Socket extends Emitter {
 
             // clear timers
             if (this.pingTimeoutTimer != null) {
-                this.pingTimeoutTimer.cancel(false);
-            }
-            if (this.heartbeatScheduler != null) {
-                this.heartbeatScheduler.shutdown();
+                this.pingTimeoutTimer.cancel();
+                this.pingTimeoutTimer = null;
             }
 
             // stop event from firing again for transport
@@ -820,11 +1400,34 @@ public class Socket extends Emitter {
 
             // emit close events
             this.emit(EVENT_CLOSE, reason, desc);
+            CloseListener[] closeListeners = this.closeListeners.get();
+            for (int i = 0; i < closeListeners.length; i++) {
+                closeListeners[i].onClose(reason, desc);
+            }
 
             // clear buffers after, so users can still
             // grab the buffers on `close` event
+            List<Packet> packets = self.writeBuffer.segment(self.writeBuffer.size());
+            for (int i = 0; i < packets.size(); i++) {
+                self.release(packets.get(i));
+                // buffers of an unfinished write may still be read by the transport,
+                // so only the ones never written go back to their pool
+                if (i >= self.prevBufferLen) {
+                    recycle(packets.get(i));
+                }
+            }
+            for (Runnable fn : self.completions.segment(self.completions.size())) {
+                fail(fn);
+            }
+            if (packets.size() > 0) {
+                self.metrics.writeBufferChanged(-packets.size(), 0);
+            }
             self.writeBuffer.clear();
+            self.completions.clear();
+            self.traces.clear();
             self.prevBufferLen = 0;
+            self.pendingWrites.clear();
+            self.checkWritable();
         }
     }
 
@@ -844,22 +1447,133 @@ public class Socket extends Emitter {
         return this.id;
     }
 
-    private ScheduledExecutorService getHeartbeatScheduler() {
-        if (this.heartbeatScheduler == null || this.heartbeatScheduler.isShutdown()) {
-            this.heartbeatScheduler = createHeartbeatScheduler();
+    /**
+     * Returns the loop running the tasks of this socket.
+     *
+     * @return the event loop of this socket.
+     */
+    public EventLoop eventLoop() {
+        return this.eventLoop;
+    }
+
+    /**
+     * Adds a listener for text messages, called as {@link #EVENT_MESSAGE} listeners are, but
+     * without an argument array.
+     *
+     * @param fn the listener.
+     * @return a reference to this object.
+     */
+    public Socket addMessageListener(MessageListener fn) {
+        this.messageListeners.add(fn);
+        return this;
+    }
+
+    public Socket removeMessageListener(MessageListener fn) {
+        this.messageListeners.remove(fn);
+        return this;
+    }
+
+    /**
+     * Adds a listener for binary messages, given a read-only view of the received bytes as
+     * with {@link #EVENT_BINARY}.
+     *
+     * @param fn the listener.
+     * @return a reference to this object.
+     */
+    public Socket addBinaryListener(BinaryListener fn) {
+        this.binaryListeners.add(fn);
+        return this;
+    }
+
+    public Socket removeBinaryListener(BinaryListener fn) {
+        this.binaryListeners.remove(fn);
+        return this;
+    }
+
+    /**
+     * Adds a listener for every packet received, called as {@link #EVENT_PACKET} listeners are.
+     *
+     * @param fn the listener.
+     * @return a reference to this object.
+     */
+    public Socket addPacketListener(PacketListener fn) {
+        this.packetListeners.add(fn);
+        return this;
+    }
+
+    public Socket removePacketListener(PacketListener fn) {
+        this.packetListeners.remove(fn);
+        return this;
+    }
+
+    /**
+     * Adds a listener called on disconnection, after the {@link #EVENT_CLOSE} listeners.
+     *
+     * @param fn the listener.
+     * @return a reference to this object.
+     */
+    public Socket addCloseListener(CloseListener fn) {
+        this.closeListeners.add(fn);
+        return this;
+    }
+
+    public Socket removeCloseListener(CloseListener fn) {
+        this.closeListeners.remove(fn);
+        return this;
+    }
+
+    private static class Trace {
+
+        long sent;
+        long enqueued;
+        long flushed;
+        long written;
+    }
+
+    private static class FutureCompletion implements Runnable {
+
+        final SendFuture future;
+
+        FutureCompletion(SendFuture future) {
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            this.future.complete(null);
         }
-        return this.heartbeatScheduler;
     }
 
-    private ScheduledExecutorService createHeartbeatScheduler() {
-        return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread thread = new Thread(r, "engine.io-client.heartbeat-" + HEARTBEAT_THREAD_COUNTER.getAndIncrement());
-                thread.setDaemon(true);
-                return thread;
-            }
-        });
+    /**
+     * Listens for text messages. See {@link #addMessageListener}.
+     */
+    public interface MessageListener {
+
+        void onMessage(String message);
+    }
+
+    /**
+     * Listens for binary messages. See {@link #addBinaryListener}.
+     */
+    public interface BinaryListener {
+
+        void onBinary(ByteBuffer message);
+    }
+
+    /**
+     * Listens for received packets. See {@link #addPacketListener}.
+     */
+    public interface PacketListener {
+
+        void onPacket(Packet packet);
+    }
+
+    /**
+     * Listens for disconnection. See {@link #addCloseListener}.
+     */
+    public interface CloseListener {
+
+        void onClose(String reason, Exception desc);
     }
 
     public static class Options extends Transport.Options {
@@ -879,6 +1593,48 @@ public class Socket extends Emitter {
         public String query;
         public Map<String, Transport.Options> transportOptions;
 
+        /**
+         * Size of the messages waiting to be written at which {@link Socket#writable()} turns
+         * false, in bytes for binary and characters for text messages. The low-water mark is
+         * half of it. Defaults to `0`, for no limit.
+         */
+        public long writeBufferHighWaterMark;
+
+        /**
+         * Number of messages waiting to be written at which {@link Socket#writable()} turns
+         * false. The low-water mark is half of it. Defaults to `0`, for no limit.
+         */
+        public int writeBufferHighWaterPackets;
+
+        /**
+         * Time in microseconds a message may be held back, so that messages sent in a burst
+         * are written together: as one payload with polling, and with a single wakeup of
+         * the transport with WebSocket. Defaults to `0`, for writing each message right away.
+         */
+        public long batchWindow;
+
+        /**
+         * Size of the held back messages at which they are written before the end of the
+         * batching window, in bytes for binary and characters for text messages. Only used
+         * with {@link #batchWindow}. Defaults to `0`, for no limit.
+         */
+        public int batchMaxBytes;
+
+        /**
+         * Whether to give the socket a loop of its own, running its tasks and listeners on
+         * virtual threads, so a blocking listener does not hold up other sockets. On JDKs
+         * without virtual threads the loop runs on a shared pool of platform threads.
+         * Ignored when {@link #eventLoop} is set. Defaults to `false`.
+         */
+        public boolean virtualThreads;
+
+        /**
+         * Collects the phase timings of the polling requests, when the call factory is an
+         * {@link OkHttpClient}. Replaces the event listener of that client for those
+         * requests. Not set by default.
+         */
+        public HttpTimings httpTimings;
+
         private static Options fromURI(URI uri, Options opts) {
             if (opts == null) {
                 opts = new Options();
@@ -0,0 +1,80 @@
+package com.kaleyra.socket_io.engineio.client;
+
+
+import com.kaleyra.socket_io.engineio.parser.PacketType;
+
+
+/**
+ * Receives the measurements of a socket and its transports, set with
+ * {@link Transport.Options#metrics}. One instance may be given to many sockets to get global
+ * figures, or one to each socket.
+ *
+ * Methods are called on the event loop of the socket, on its hot paths, so they must be cheap
+ * and must not block. Extend {@link NoopSocketMetrics} to implement only some of them, or use
+ * {@link CountingSocketMetrics}.
+ */
+public interface SocketMetrics {
+
+    /**
+     * A packet was handed to the transport to be written.
+     *
+     * @param type the packet type.
+     * @param size the size of the packet data in bytes, text being counted as UTF-8.
+     */
+    void packetSent(PacketType type, long size);
+
+    /**
+     * A packet was received.
+     *
+     * @param type the packet type.
+     * @param size the size of the packet data in bytes, text being counted as UTF-8.
+     */
+    void packetReceived(PacketType type, long size);
+
+    /**
+     * The socket flushed its write buffer to the transport.
+     *
+     * @param packets the number of packets in the flush.
+     */
+    void flushed(int packets);
+
+    /**
+     * The number of packets in the write buffer changed, as packets were sent, written, or
+     * dropped when the socket closed.
+     *
+     * @param delta the change, positive for packets sent and negative for packets written or
+     * dropped; summing it over the sockets sharing an instance gives their total depth.
+     * @param packets the packets waiting in the write buffer of the socket, including the ones
+     * being written.
+     */
+    void writeBufferChanged(int delta, int packets);
+
+    /**
+     * The polling transport started a poll request.
+     */
+    void polled();
+
+    /**
+     * The socket started probing a transport to upgrade to.
+     *
+     * @param transport the name of the transport.
+     */
+    void upgradeStarted(String transport);
+
+    void upgradeSucceeded(String transport);
+
+    void upgradeFailed(String transport);
+
+    /**
+     * The socket closed because the server did not ping in time.
+     */
+    void pingTimeout();
+
+    /**
+     * A transport failed.
+     *
+     * @param transport the name of the transport.
+     * @param err the error.
+     */
+    void transportError(String transport, Exception err);
+}
@@ -1,15 +1,22 @@
 package com.kaleyra.socket_io.engineio.client;
 
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import com.kaleyra.socket_io.buffer.PooledBuffer;
 import com.kaleyra.socket_io.engineio.parser.Packet;
+import com.kaleyra.socket_io.engineio.parser.PacketType;
 import com.kaleyra.socket_io.engineio.parser.Parser;
 import com.kaleyra.socket_io.emitter.Emitter;
+import com.kaleyra.socket_io.thread.EventLoop;
 import com.kaleyra.socket_io.thread.EventThread;
 import okhttp3.Call;
 import okhttp3.WebSocket;
+import okio.ByteString;
 
 public abstract class Transport extends Emitter {
 
@@ -46,6 +53,19 @@ public abstract class Transport extends Emitter {
     protected Call.Factory callFactory;
     protected Map<String, List<String>> extraHeaders;
     protected boolean enablePollingCookies;
+    protected EventLoop eventLoop;
+    protected int maxPendingWrites;
+    protected SocketMetrics metrics;
+    protected PacketTracer tracer;
+    protected int traceSampleInterval;
+
+    /**
+     * When the data being delivered was read, as a {@link System#nanoTime()} value taken on
+     * the I/O thread. Transports set it before delivering each packet while tracing; it is
+     * cleared once the packet is handled.
+     */
+    protected long receivedNanos;
+    private int traceCounter;
 
     public Transport(Options opts) {
         this.path = opts.path;
@@ -60,17 +80,23 @@ public abstract class Transport extends Emitter {
         this.callFactory = opts.callFactory;
         this.extraHeaders = opts.extraHeaders;
         this.enablePollingCookies = opts.enablePollingCookies;
+        this.eventLoop = opts.eventLoop != null ? opts.eventLoop : EventThread.LOOP;
+        this.maxPendingWrites = Math.max(1, opts.maxPendingWrites);
+        this.metrics = opts.metrics != null ? opts.metrics : NoopSocketMetrics.INSTANCE;
+        this.tracer = opts.tracer;
+        this.traceSampleInterval = Math.max(1, opts.traceSampleInterval);
     }
 
     protected Transport onError(String msg, Exception desc) {
         // TODO: handle error
         Exception err = new EngineIOException(msg, desc);
+        this.metrics.transportError(this.name, err);
         this.emit(EVENT_ERROR, err);
         return this;
     }
 
     public Transport open() {
-        EventThread.exec(new Runnable() {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 if (Transport.this.readyState == ReadyState.CLOSED || Transport.this.readyState == null) {
@@ -83,7 +109,7 @@ public abstract class Transport extends Emitter {
     }
 
     public Transport close() {
-        EventThread.exec(new Runnable() {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 if (Transport.this.readyState == ReadyState.OPENING || Transport.this.readyState == ReadyState.OPEN) {
@@ -95,12 +121,41 @@ public abstract class Transport extends Emitter {
         return this;
     }
 
-    public void send(final Packet[] packets) {
-        EventThread.exec(new Runnable() {
+    public void send(Packet[] packets) {
+        this.send(Arrays.asList(packets));
+    }
+
+    /**
+     * Sends packets held in a list. The list must not change until the transport emits
+     * {@link #EVENT_DRAIN}.
+     *
+     * @param packets the packets to send.
+     */
+    public void send(final List<Packet> packets) {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 if (Transport.this.readyState == ReadyState.OPEN) {
-                    Transport.this.write(packets);
+                    SocketMetrics metrics = Transport.this.metrics;
+                    // measuring text in bytes takes a pass over it, only made when counted
+                    boolean measured = metrics != NoopSocketMetrics.INSTANCE;
+                    List<Packet> written = packets;
+                    for (int i = 0; i < packets.size(); i++) {
+                        Packet packet = packets.get(i);
+                        if (measured) {
+                            metrics.packetSent(packet.packetType(), Socket.byteSizeOf(packet));
+                        }
+                        if (packet.data instanceof PooledBuffer) {
+                            // the parser only knows plain buffers, and the socket keeps
+                            // the pooled one to recycle it once written
+                            if (written == packets) {
+                                written = new ArrayList<Packet>(packets);
+                            }
+                            ByteBuffer buffer = ((PooledBuffer) packet.data).buffer().duplicate();
+                            written.set(i, new Packet<ByteBuffer>(packet.type, buffer));
+                        }
+                    }
+                    Transport.this.write(written);
                 } else {
                     throw new RuntimeException("Transport not open");
                 }
@@ -122,7 +177,25 @@ public abstract class Transport extends Emitter {
         this.onPacket(Parser.decodePacket(data));
     }
 
+    protected void onData(ByteString data) {
+        this.onPacket(Parser.decodePacket(data));
+    }
+
     protected void onPacket(Packet packet) {
+        PacketType type = packet.packetType();
+        if (type != null && this.metrics != NoopSocketMetrics.INSTANCE) {
+            this.metrics.packetReceived(type, Socket.byteSizeOf(packet));
+        }
+        long receivedNanos = this.receivedNanos;
+        this.receivedNanos = 0;
+        if (this.tracer != null && ++this.traceCounter >= this.traceSampleInterval) {
+            this.traceCounter = 0;
+            long handled = System.nanoTime();
+            long received = receivedNanos != 0 ? receivedNanos : handled;
+            this.emit(EVENT_PACKET, packet);
+            this.tracer.onPacketReceived(packet, received, handled, System.nanoTime());
+            return;
+        }
         this.emit(EVENT_PACKET, packet);
     }
 
@@ -133,6 +206,16 @@ public abstract class Transport extends Emitter {
 
     abstract protected void write(Packet[] packets);
 
+    /**
+     * Writes packets held in a list. Copies them to an array for {@link #write(Packet[])}
+     * unless overridden.
+     *
+     * @param packets the packets to write.
+     */
+    protected void write(List<Packet> packets) {
+        this.write(packets.toArray(new Packet[packets.size()]));
+    }
+
     abstract protected void doOpen();
 
     abstract protected void doClose();
@@ -153,5 +236,37 @@ public abstract class Transport extends Emitter {
         public Call.Factory callFactory;
         public Map<String, List<String>> extraHeaders;
         public boolean enablePollingCookies = true;
+
+        /**
+         * The loop running the tasks of the socket and its transports. Defaults to
+         * {@link EventThread#LOOP}, shared by all sockets; use an
+         * {@link com.kaleyra.socket_io.thread.EventLoopGroup} to spread sockets over several threads.
+         */
+        public EventLoop eventLoop;
+
+        /**
+         * Number of writes the polling transport may have in flight at once, each one a POST
+         * request. Defaults to `1`. Higher values need a server that accepts overlapping
+         * POST requests of a session and handles them in the order they were sent; the
+         * reference Engine.IO server rejects them.
+         */
+        public int maxPendingWrites = 1;
+
+        /**
+         * Receives the measurements of the socket and its transports. Defaults to
+         * {@link NoopSocketMetrics}.
+         */
+        public SocketMetrics metrics;
+
+        /**
+         * Receives the timeline of sampled packets. Tracing is off when not set.
+         */
+        public PacketTracer tracer;
+
+        /**
+         * Traces one packet in this many, in each direction. Defaults to `1`, tracing every
+         * packet; raise it to keep the cost low on busy sockets.
+         */
+        public int traceSampleInterval = 1;
     }
 }
@@ -2,15 +2,19 @@ package com.kaleyra.socket_io.engineio.client.transports;
 
 
 import com.kaleyra.socket_io.engineio.parser.Packet;
+import com.kaleyra.socket_io.engineio.parser.PacketType;
 import com.kaleyra.socket_io.emitter.Emitter;
 import com.kaleyra.socket_io.engineio.client.Transport;
 import com.kaleyra.socket_io.engineio.parser.Parser;
 import com.kaleyra.socket_io.parseqs.ParseQS;
-import com.kaleyra.socket_io.thread.EventThread;
 import com.kaleyra.socket_io.yeast.Yeast;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,6 +28,7 @@ abstract public class Polling extends Transport {
     public static final String EVENT_POLL_COMPLETE = "pollComplete";
 
     private boolean polling;
+    private final Queue<boolean[]> pendingWrites = new ArrayDeque<boolean[]>();
 
 
     public Polling(Options opts) {
@@ -36,7 +41,7 @@ abstract public class Polling extends Transport {
     }
 
     public void pause(final Runnable onPause) {
-        EventThread.exec(new Runnable() {
+        this.eventLoop.exec(new Runnable() {
             @Override
             public void run() {
                 final Polling self = Polling.this;
@@ -52,7 +57,7 @@ abstract public class Polling extends Transport {
                     }
                 };
 
-                if (Polling.this.polling || !Polling.this.writable) {
+                if (Polling.this.polling || !Polling.this.pendingWrites.isEmpty()) {
                     final int[] total = new int[]{0};
 
                     if (Polling.this.polling) {
@@ -69,12 +74,14 @@ abstract public class Polling extends Transport {
                         });
                     }
 
-                    if (!Polling.this.writable) {
+                    if (!Polling.this.pendingWrites.isEmpty()) {
                         logger.fine("we are currently writing - waiting to pause");
                         total[0]++;
-                        Polling.this.once(EVENT_DRAIN, new Emitter.Listener() {
+                        Polling.this.on(EVENT_DRAIN, new Emitter.Listener() {
                             @Override
                             public void call(Object... args) {
+                                if (!self.pendingWrites.isEmpty()) return;
+                                self.off(EVENT_DRAIN, this);
                                 logger.fine("pre-pause writing complete");
                                 if (--total[0] == 0) {
                                     pause.run();
@@ -92,6 +99,7 @@ abstract public class Polling extends Transport {
     private void poll() {
         logger.fine("polling");
         this.polling = true;
+        this.metrics.polled();
         this.doPoll();
         this.emit(EVENT_POLL);
     }
@@ -111,25 +119,46 @@ abstract public class Polling extends Transport {
         if (logger.isLoggable(Level.FINE)) {
             logger.fine(String.format("polling got data %s", data));
         }
+        // all the packets of the payload were read together
+        final long received = this.tracer == null ? 0
+                : this.receivedNanos != 0 ? this.receivedNanos : System.nanoTime();
         Parser.DecodePayloadCallback callback = new Parser.DecodePayloadCallback() {
             @Override
             public boolean call(Packet packet, int index, int total) {
-                if (self.readyState == ReadyState.OPENING && Packet.OPEN.equals(packet.type)) {
-                    self.onOpen();
-                }
-
-                if (Packet.CLOSE.equals(packet.type)) {
-                    self.onClose();
-                    return false;
-                }
-
-                self.onPacket(packet);
-                return true;
+                self.receivedNanos = received;
+                return self.onPollPacket(packet);
             }
         };
 
         Parser.decodePayload((String) data, callback);
 
+        this.onPollComplete();
+    }
+
+    /**
+     * Handles a packet of a poll response.
+     *
+     * @param packet the decoded packet.
+     * @return false if the rest of the response must be ignored.
+     */
+    protected boolean onPollPacket(Packet packet) {
+        if (this.readyState == ReadyState.OPENING && packet.packetType() == PacketType.OPEN) {
+            this.onOpen();
+        }
+
+        if (packet.packetType() == PacketType.CLOSE) {
+            this.onClose();
+            return false;
+        }
+
+        this.onPacket(packet);
+        return true;
+    }
+
+    /**
+     * Called once all the packets of a poll response have been handled.
+     */
+    protected void onPollComplete() {
         if (this.readyState != ReadyState.CLOSED) {
             this.polling = false;
             this.emit(EVENT_POLL_COMPLETE);
@@ -151,7 +180,7 @@ abstract public class Polling extends Transport {
             @Override
             public void call(Object... args) {
                 logger.fine("writing close packet");
-                self.write(new Packet[]{new Packet(Packet.CLOSE)});
+                self.write(new Packet[]{new Packet(PacketType.CLOSE)});
             }
         };
 
@@ -167,20 +196,45 @@ abstract public class Polling extends Transport {
     }
 
     protected void write(Packet[] packets) {
+        this.write(Arrays.asList(packets));
+    }
+
+    @Override
+    protected void write(List<Packet> packets) {
         final Polling self = this;
-        this.writable = false;
+        // completion flag of this write
+        final boolean[] done = new boolean[1];
+        this.pendingWrites.offer(done);
+        this.writable = this.pendingWrites.size() < this.maxPendingWrites;
         final Runnable callbackfn = new Runnable() {
             @Override
             public void run() {
-                self.writable = true;
-                self.emit(EVENT_DRAIN);
+                done[0] = true;
+                // requests may complete out of order, but drains follow the write order
+                while (!self.pendingWrites.isEmpty() && self.pendingWrites.peek()[0]) {
+                    self.pendingWrites.poll();
+                    self.writable = self.pendingWrites.size() < self.maxPendingWrites;
+                    self.emit(EVENT_DRAIN);
+                }
             }
         };
 
+        this.doWrite(packets, callbackfn);
+    }
+
+    /**
+     * Writes the payload of {@code packets}. By default the payload is encoded to a
+     * String and passed to {@link #doWrite(String, Runnable)}.
+     *
+     * @param packets the packets to write.
+     * @param fn called once the payload has been written.
+     */
+    protected void doWrite(List<Packet> packets, final Runnable fn) {
+        final Polling self = this;
         Parser.encodePayload(packets, new Parser.EncodeCallback<String>() {
             @Override
             public void call(String data) {
-                self.doWrite(data, callbackfn);
+                self.doWrite(data, fn);
             }
         });
     }
@@ -11,17 +11,21 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.kaleyra.socket_io.emitter.Emitter;
+import com.kaleyra.socket_io.engineio.client.OkHttpClientProvider;
 import com.kaleyra.socket_io.engineio.client.Transport;
-import com.kaleyra.socket_io.thread.EventThread;
+import com.kaleyra.socket_io.engineio.parser.Packet;
+import com.kaleyra.socket_io.engineio.parser.PacketType;
+import com.kaleyra.socket_io.engineio.parser.Parser;
 import com.kaleyra.socket_io.cookie.MemoryCookieJar;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
 
 public class PollingXHR extends Polling {
 
@@ -60,7 +64,7 @@ public class PollingXHR extends Polling {
         }).on(Request.EVENT_RESPONSE_HEADERS, new Emitter.Listener() {
             @Override
             public void call(final Object... args) {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
                         self.emit(Transport.EVENT_RESPONSE_HEADERS, args[0]);
@@ -74,15 +78,26 @@ public class PollingXHR extends Polling {
     @Override
     protected void doWrite(String data, final Runnable fn) {
         Request.Options opts = new Request.Options();
-        opts.method = "POST";
         opts.data = data;
+        this.doWrite(opts, fn);
+    }
+
+    @Override
+    protected void doWrite(List<Packet> packets, final Runnable fn) {
+        Request.Options opts = new Request.Options();
+        opts.packets = packets;
+        this.doWrite(opts, fn);
+    }
+
+    private void doWrite(Request.Options opts, final Runnable fn) {
+        opts.method = "POST";
         opts.extraHeaders = this.extraHeaders;
         Request req = this.request(opts);
         final PollingXHR self = this;
         req.on(Request.EVENT_SUCCESS, new Emitter.Listener() {
             @Override
             public void call(Object... args) {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
                         fn.run();
@@ -93,7 +108,7 @@ public class PollingXHR extends Polling {
         req.on(Request.EVENT_ERROR, new Emitter.Listener() {
             @Override
             public void call(final Object... args) {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
                         Exception err = args.length > 0 && args[0] instanceof Exception ? (Exception)args[0] : null;
@@ -110,14 +125,26 @@ public class PollingXHR extends Polling {
         logger.fine("xhr poll");
         Request req = this.request();
         final PollingXHR self = this;
-        req.on(Request.EVENT_DATA, new Emitter.Listener() {
+        req.on(Request.EVENT_PACKET, new Emitter.Listener() {
             @Override
             public void call(final Object... args) {
-                EventThread.exec(new Runnable() {
+                final long received = self.tracer != null ? System.nanoTime() : 0;
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
-                        Object arg = args.length > 0 ? args[0] : null;
-                        self.onData((String)arg);
+                        self.receivedNanos = received;
+                        self.onPollPacket((Packet) args[0]);
+                    }
+                });
+            }
+        });
+        req.on(Request.EVENT_SUCCESS, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                self.eventLoop.exec(new Runnable() {
+                    @Override
+                    public void run() {
+                        self.onPollComplete();
                     }
                 });
             }
@@ -125,7 +152,7 @@ public class PollingXHR extends Polling {
         req.on(Request.EVENT_ERROR, new Emitter.Listener() {
             @Override
             public void call(final Object... args) {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
                         Exception err = args.length > 0 && args[0] instanceof Exception ? (Exception) args[0] : null;
@@ -145,6 +172,12 @@ public class PollingXHR extends Polling {
         public static final String EVENT_REQUEST_HEADERS = "requestHeaders";
         public static final String EVENT_RESPONSE_HEADERS = "responseHeaders";
 
+        /**
+         * Called for each packet of the response, as soon as it is read. When this event has
+         * listeners, the response is decoded while it is read and {@code data} is not emitted.
+         */
+        public static final String EVENT_PACKET = "packet";
+
         private static final String TEXT_CONTENT_TYPE = "text/plain;charset=UTF-8";
 
         private static final MediaType TEXT_MEDIA_TYPE = MediaType.parse(TEXT_CONTENT_TYPE);
@@ -153,6 +186,7 @@ public class PollingXHR extends Polling {
         private String uri;
 
         private String data;
+        private List<Packet> packets;
 
         private Call.Factory callFactory;
         private Map<String, List<String>> extraHeaders;
@@ -163,7 +197,8 @@ public class PollingXHR extends Polling {
             this.method = opts.method != null ? opts.method : "GET";
             this.uri = opts.uri;
             this.data = opts.data;
-            this.callFactory = opts.callFactory != null ? opts.callFactory : new OkHttpClient();
+            this.packets = opts.packets;
+            this.callFactory = opts.callFactory != null ? opts.callFactory : OkHttpClientProvider.getDefault().client();
             this.extraHeaders = opts.extraHeaders;
         }
 
@@ -183,7 +218,8 @@ public class PollingXHR extends Polling {
             this.onRequestHeaders(headers);
 
             if (LOGGABLE_FINE) {
-                logger.fine(String.format("sending xhr with url %s | data %s", this.uri, this.data));
+                logger.fine(String.format("sending xhr with url %s | data %s", this.uri,
+                        this.packets != null ? this.packets.size() + " packets" : this.data));
             }
 
             okhttp3.Request.Builder requestBuilder = new okhttp3.Request.Builder();
@@ -193,7 +229,9 @@ public class PollingXHR extends Polling {
                 }
             }
             RequestBody body = null;
-            if (this.data != null) {
+            if (this.packets != null) {
+                body = new PayloadRequestBody(this.packets);
+            } else if (this.data != null) {
                 body = RequestBody.create(TEXT_MEDIA_TYPE, this.data);
             }
 
@@ -253,17 +291,72 @@ public class PollingXHR extends Polling {
             ResponseBody body = response.body();
 
             try {
-                this.onData(body.string());
+                if (this.hasListeners(EVENT_PACKET)) {
+                    this.onPackets(body.source());
+                } else {
+                    this.onData(body.string());
+                }
             } catch (IOException e) {
                 this.onError(e);
             }
         }
 
+        private void onPackets(BufferedSource source) throws IOException {
+            final Request self = this;
+            Parser.decodePayload(source, new Parser.DecodePayloadCallback<String>() {
+                @Override
+                public boolean call(Packet<String> packet, int index, int total) {
+                    self.emit(EVENT_PACKET, packet);
+                    // stop reading once the server closed the session
+                    return packet.packetType() != PacketType.CLOSE;
+                }
+            });
+            this.onSuccess();
+        }
+
+        /**
+         * Encodes the payload straight into the request stream, so it is never held
+         * in memory as a whole.
+         */
+        private static class PayloadRequestBody extends RequestBody {
+
+            private final List<Packet> packets;
+            private long contentLength = -1;
+
+            PayloadRequestBody(List<Packet> packets) {
+                this.packets = packets;
+            }
+
+            @Override
+            public MediaType contentType() {
+                return TEXT_MEDIA_TYPE;
+            }
+
+            @Override
+            public long contentLength() {
+                if (this.contentLength == -1) {
+                    this.contentLength = Parser.payloadLength(this.packets);
+                }
+                return this.contentLength;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                Parser.encodePayload(this.packets, sink);
+            }
+        }
+
         public static class Options {
 
             public String uri;
             public String method;
             public String data;
+
+            /**
+             * Packets to send as the request body, encoded while the request is written.
+             * Takes precedence over {@code data}.
+             */
+            public List<Packet> packets;
             public Call.Factory callFactory;
             public Map<String, List<String>> extraHeaders;
         }
@@ -3,16 +3,17 @@ package com.kaleyra.socket_io.engineio.client.transports;
 
 import com.kaleyra.socket_io.engineio.parser.Packet;
 import com.kaleyra.socket_io.engineio.parser.Parser;
+import com.kaleyra.socket_io.engineio.client.OkHttpClientProvider;
 import com.kaleyra.socket_io.engineio.client.Transport;
 import com.kaleyra.socket_io.parseqs.ParseQS;
-import com.kaleyra.socket_io.thread.EventThread;
 import com.kaleyra.socket_io.yeast.Yeast;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.WebSocketListener;
 import okio.ByteString;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,7 +42,7 @@ public class WebSocket extends Transport {
         this.emit(EVENT_REQUEST_HEADERS, headers);
 
         final WebSocket self = this;
-        okhttp3.WebSocket.Factory factory = webSocketFactory != null ? webSocketFactory : new OkHttpClient();
+        okhttp3.WebSocket.Factory factory = webSocketFactory != null ? webSocketFactory : OkHttpClientProvider.getDefault().client();
         Request.Builder builder = new Request.Builder().url(uri());
         for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
             for (String v : entry.getValue()) {
@@ -53,7 +54,7 @@ public class WebSocket extends Transport {
             @Override
             public void onOpen(okhttp3.WebSocket webSocket, Response response) {
                 final Map<String, List<String>> headers = response.headers().toMultimap();
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
                         self.emit(EVENT_RESPONSE_HEADERS, headers);
@@ -67,9 +68,11 @@ public class WebSocket extends Transport {
                 if (text == null) {
                     return;
                 }
-                EventThread.exec(new Runnable() {
+                final long received = self.tracer != null ? System.nanoTime() : 0;
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
+                    self.receivedNanos = received;
                     self.onData(text);
                     }
                 });
@@ -80,17 +83,19 @@ public class WebSocket extends Transport {
                 if (bytes == null) {
                     return;
                 }
-                EventThread.exec(new Runnable() {
+                final long received = self.tracer != null ? System.nanoTime() : 0;
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
-                        self.onData(bytes.toByteArray());
+                        self.receivedNanos = received;
+                        self.onData(bytes);
                     }
                 });
             }
 
             @Override
             public void onClosed(okhttp3.WebSocket webSocket, int code, String reason) {
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
                         self.onClose();
@@ -103,7 +108,7 @@ public class WebSocket extends Transport {
                 if (!(t instanceof Exception)) {
                     return;
                 }
-                EventThread.exec(new Runnable() {
+                self.eventLoop.exec(new Runnable() {
                     @Override
                     public void run() {
                         self.onError("websocket error", (Exception) t);
@@ -114,6 +119,11 @@ public class WebSocket extends Transport {
     }
 
     protected void write(Packet[] packets) {
+        this.write(Arrays.asList(packets));
+    }
+
+    @Override
+    protected void write(List<Packet> packets) {
         final WebSocket self = this;
         this.writable = false;
 
@@ -122,7 +132,7 @@ public class WebSocket extends Transport {
             public void run() {
                 // fake drain
                 // defer to next tick to allow Socket to clear writeBuffer
-                EventThread.nextTick(new Runnable() {
+                self.eventLoop.nextTick(new Runnable() {
                     @Override
                     public void run() {
                         self.writable = true;
@@ -132,7 +142,7 @@ public class WebSocket extends Transport {
             }
         };
 
-        final int[] total = new int[]{packets.length};
+        final int[] total = new int[]{packets.size()};
         for (Packet packet : packets) {
             if (this.readyState != ReadyState.OPENING && this.readyState != ReadyState.OPEN) {
                 // Ensure we don't try to send anymore packets if the socket ends up being closed due to an exception
@@ -145,6 +155,10 @@ public class WebSocket extends Transport {
                     try {
                         if (packet instanceof String) {
                             self.ws.send((String) packet);
+                        } else if (packet instanceof ByteString) {
+                            self.ws.send((ByteString) packet);
+                        } else if (packet instanceof ByteBuffer) {
+                            self.ws.send(ByteString.of(((ByteBuffer) packet).duplicate()));
                         } else if (packet instanceof byte[]) {
                             self.ws.send(ByteString.of((byte[]) packet));
                         }
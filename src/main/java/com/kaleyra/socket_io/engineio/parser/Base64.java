@@ -16,7 +16,9 @@ package com.kaleyra.socket_io.engineio.parser;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 
 /**
  * Utilities for encoding and decoding the Base64 representation of
@@ -156,6 +158,142 @@ public class Base64 {
         System.arraycopy(decoder.output, 0, temp, 0, decoder.op);
         return temp;
     }
+    /**
+     * Compute the exact number of bytes the Base64-encoded data in
+     * the given range of input decodes to.
+     *
+     * @param input  the data to decode
+     * @param start  the position of the first character to decode
+     * @param end    the position following the last character to decode
+     * @param flags  controls certain features of the decoded output.
+     *               Pass {@code DEFAULT} to decode standard Base64.
+     */
+    public static int decodedLength(CharSequence input, int start, int end, int flags) {
+        final int[] alphabet = ((flags & URL_SAFE) == 0) ? Decoder.DECODE : Decoder.DECODE_WEBSAFE;
+        int count = 0;
+        for (int p = start; p < end; p++) {
+            char c = input.charAt(p);
+            if (c <= 0xff && alphabet[c] >= 0) {
+                count++;
+            }
+        }
+        return count / 4 * 3 + (count % 4 == 3 ? 2 : count % 4 == 2 ? 1 : 0);
+    }
+    /**
+     * Decode the Base64-encoded data in the given range of input and
+     * return the data in a new byte array of the exact decoded size.
+     *
+     * <p>The padding '=' characters at the end are considered optional, but
+     * if any are present, there must be the correct number of them.
+     *
+     * @param input  the data to decode
+     * @param start  the position of the first character to decode
+     * @param end    the position following the last character to decode
+     * @param flags  controls certain features of the decoded output.
+     *               Pass {@code DEFAULT} to decode standard Base64.
+     *
+     * @throws IllegalArgumentException if the input contains
+     * incorrect padding
+     */
+    public static byte[] decode(CharSequence input, int start, int end, int flags) {
+        byte[] output = new byte[decodedLength(input, start, end, flags)];
+        decode(input, start, end, flags, output, 0);
+        return output;
+    }
+    /**
+     * Decode the Base64-encoded data in the given range of input into
+     * a buffer provided by the caller, which must have room for
+     * {@link #decodedLength(CharSequence, int, int, int)} bytes.
+     *
+     * <p>The padding '=' characters at the end are considered optional, but
+     * if any are present, there must be the correct number of them.
+     *
+     * @param input  the data to decode
+     * @param start  the position of the first character to decode
+     * @param end    the position following the last character to decode
+     * @param flags  controls certain features of the decoded output.
+     *               Pass {@code DEFAULT} to decode standard Base64.
+     * @param output the buffer to write the decoded data into
+     * @param offset the position within output at which to start writing
+     * @return the number of bytes written to output
+     *
+     * @throws IllegalArgumentException if the input contains
+     * incorrect padding
+     */
+    public static int decode(CharSequence input, int start, int end, int flags, byte[] output, int offset) {
+        // Same state machine as Decoder.process, reading chars instead of bytes.
+        final int[] alphabet = ((flags & URL_SAFE) == 0) ? Decoder.DECODE : Decoder.DECODE_WEBSAFE;
+        int state = 0;
+        int value = 0;
+        int op = offset;
+        for (int p = start; p < end; p++) {
+            char c = input.charAt(p);
+            int d = c <= 0xff ? alphabet[c] : Decoder.SKIP;
+            switch (state) {
+                case 0:
+                case 1:
+                    if (d >= 0) {
+                        value = (value << 6) | d;
+                        ++state;
+                    } else if (d != Decoder.SKIP) {
+                        throw new IllegalArgumentException("bad base-64");
+                    }
+                    break;
+                case 2:
+                    if (d >= 0) {
+                        value = (value << 6) | d;
+                        ++state;
+                    } else if (d == Decoder.EQUALS) {
+                        output[op++] = (byte) (value >> 4);
+                        state = 4;
+                    } else if (d != Decoder.SKIP) {
+                        throw new IllegalArgumentException("bad base-64");
+                    }
+                    break;
+                case 3:
+                    if (d >= 0) {
+                        value = (value << 6) | d;
+                        output[op++] = (byte) (value >> 16);
+                        output[op++] = (byte) (value >> 8);
+                        output[op++] = (byte) value;
+                        value = 0;
+                        state = 0;
+                    } else if (d == Decoder.EQUALS) {
+                        output[op++] = (byte) (value >> 10);
+                        output[op++] = (byte) (value >> 2);
+                        state = 5;
+                    } else if (d != Decoder.SKIP) {
+                        throw new IllegalArgumentException("bad base-64");
+                    }
+                    break;
+                case 4:
+                    if (d == Decoder.EQUALS) {
+                        ++state;
+                    } else if (d != Decoder.SKIP) {
+                        throw new IllegalArgumentException("bad base-64");
+                    }
+                    break;
+                case 5:
+                    if (d != Decoder.SKIP) {
+                        throw new IllegalArgumentException("bad base-64");
+                    }
+                    break;
+            }
+        }
+        switch (state) {
+            case 1:
+            case 4:
+                throw new IllegalArgumentException("bad base-64");
+            case 2:
+                output[op++] = (byte) (value >> 4);
+                break;
+            case 3:
+                output[op++] = (byte) (value >> 10);
+                output[op++] = (byte) (value >> 2);
+                break;
+        }
+        return op - offset;
+    }
     /* package */ static class Decoder extends Coder {
         /**
          * Lookup table for turning bytes into their position in the
@@ -463,10 +601,110 @@ public class Base64 {
      */
     public static byte[] encode(byte[] input, int offset, int len, int flags) {
         Encoder encoder = new Encoder(flags, null);
-        // Compute the exact length of the array we will produce.
+        int output_len = encodedLength(len, flags);
+        encoder.output = new byte[output_len];
+        encoder.process(input, offset, len, true);
+        assert encoder.op == output_len;
+        return encoder.output;
+    }
+    /**
+     * Base64-encode the given data and append the result to output,
+     * without allocating intermediate arrays or strings.
+     *
+     * @param input  the data to encode
+     * @param offset the position within the input array at which to
+     *               start
+     * @param len    the number of bytes of input to encode
+     * @param flags  controls certain features of the encoded output.
+     *               Passing {@code DEFAULT} results in output that
+     *               adheres to RFC 2045.
+     * @param output where to append the encoded characters, such as a
+     *               StringBuilder or a CharBuffer
+     */
+    public static void encode(byte[] input, int offset, int len, int flags, Appendable output) throws IOException {
+        encode(ByteBuffer.wrap(input), offset, offset + len, flags, output);
+    }
+    /**
+     * Base64-encode the remaining bytes of input and append the result
+     * to output, without allocating intermediate arrays or strings. The
+     * position of input is advanced to its limit.
+     *
+     * @param input  the data to encode
+     * @param flags  controls certain features of the encoded output.
+     *               Passing {@code DEFAULT} results in output that
+     *               adheres to RFC 2045.
+     * @param output where to append the encoded characters, such as a
+     *               StringBuilder or a CharBuffer
+     */
+    public static void encode(ByteBuffer input, int flags, Appendable output) throws IOException {
+        encode(input, input.position(), input.limit(), flags, output);
+        input.position(input.limit());
+    }
+    private static void encode(ByteBuffer input, int start, int end, int flags, Appendable output) throws IOException {
+        // Same output as Encoder.process, emitting chars instead of bytes.
+        final byte[] alphabet = ((flags & URL_SAFE) == 0) ? Encoder.ENCODE : Encoder.ENCODE_WEBSAFE;
+        final boolean do_padding = (flags & NO_PADDING) == 0;
+        final boolean do_newline = (flags & NO_WRAP) == 0;
+        final boolean do_cr = (flags & CRLF) != 0;
+        int count = Encoder.LINE_GROUPS;
+        int p = start;
+        while (p + 3 <= end) {
+            int v = ((input.get(p) & 0xff) << 16) |
+                    ((input.get(p+1) & 0xff) << 8) |
+                    (input.get(p+2) & 0xff);
+            output.append((char) alphabet[(v >> 18) & 0x3f]);
+            output.append((char) alphabet[(v >> 12) & 0x3f]);
+            output.append((char) alphabet[(v >> 6) & 0x3f]);
+            output.append((char) alphabet[v & 0x3f]);
+            p += 3;
+            if (do_newline && --count == 0) {
+                if (do_cr) output.append('\r');
+                output.append('\n');
+                count = Encoder.LINE_GROUPS;
+            }
+        }
+        if (p == end - 1) {
+            int v = (input.get(p) & 0xff) << 4;
+            output.append((char) alphabet[(v >> 6) & 0x3f]);
+            output.append((char) alphabet[v & 0x3f]);
+            if (do_padding) {
+                output.append('=');
+                output.append('=');
+            }
+        } else if (p == end - 2) {
+            int v = ((input.get(p) & 0xff) << 10) |
+                    ((input.get(p+1) & 0xff) << 2);
+            output.append((char) alphabet[(v >> 12) & 0x3f]);
+            output.append((char) alphabet[(v >> 6) & 0x3f]);
+            output.append((char) alphabet[v & 0x3f]);
+            if (do_padding) {
+                output.append('=');
+            }
+        } else if (count == Encoder.LINE_GROUPS) {
+            // Either no input or the last line was already terminated.
+            return;
+        }
+        if (do_newline) {
+            if (do_cr) output.append('\r');
+            output.append('\n');
+        }
+    }
+    /**
+     * Compute the exact length of the Base64 encoding of {@code len}
+     * bytes of input.
+     *
+     * @param len    the number of bytes of input to encode
+     * @param flags  controls certain features of the encoded output.
+     *               Passing {@code DEFAULT} results in output that
+     *               adheres to RFC 2045.
+     */
+    public static int encodedLength(int len, int flags) {
+        boolean do_padding = (flags & NO_PADDING) == 0;
+        boolean do_newline = (flags & NO_WRAP) == 0;
+        boolean do_cr = (flags & CRLF) != 0;
         int output_len = len / 3 * 4;
         // Account for the tail of the data and the padding bytes, if any.
-        if (encoder.do_padding) {
+        if (do_padding) {
             if (len % 3 > 0) {
                 output_len += 4;
             }
@@ -478,14 +716,11 @@ public class Base64 {
             }
         }
         // Account for the newlines, if any.
-        if (encoder.do_newline && len > 0) {
+        if (do_newline && len > 0) {
             output_len += (((len-1) / (3 * Encoder.LINE_GROUPS)) + 1) *
-                    (encoder.do_cr ? 2 : 1);
+                    (do_cr ? 2 : 1);
         }
-        encoder.output = new byte[output_len];
-        encoder.process(input, offset, len, true);
-        assert encoder.op == output_len;
-        return encoder.output;
+        return output_len;
     }
     /* package */ static class Encoder extends Coder {
         /**
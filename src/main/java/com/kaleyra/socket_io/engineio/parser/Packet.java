@@ -12,9 +12,15 @@ public class Packet<T> {
     static final public String NOOP = "noop";
     static final public String ERROR = "error";
 
+    /**
+     * The name of the packet type. Kept for compatibility, prefer {@link #packetType()}.
+     */
     public String type;
     public T data;
 
+    // resolved once, so reading it does not touch the public fields
+    private final PacketType packetType;
+
 
     public Packet(String type) {
         this(type, null);
@@ -23,5 +29,31 @@ public class Packet<T> {
     public Packet(String type, T data) {
         this.type = type;
         this.data = data;
+        this.packetType = PacketType.fromValue(type);
+    }
+
+    public Packet(PacketType type) {
+        this(type, null);
+    }
+
+    public Packet(PacketType type, T data) {
+        this.type = type.value;
+        this.data = data;
+        this.packetType = type;
+    }
+
+    /**
+     * Returns the type of this packet, resolved from {@link #type}.
+     *
+     * @return the type, or {@code null} if {@link #type} is unknown.
+     */
+    public PacketType packetType() {
+        PacketType packetType = this.packetType;
+        String type = this.type;
+        // the type resolved on creation, unless type was reassigned since
+        if (packetType != null && (packetType.value == type || packetType.value.equals(type))) {
+            return packetType;
+        }
+        return PacketType.fromValue(type);
     }
 }
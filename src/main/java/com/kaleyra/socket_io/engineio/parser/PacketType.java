@@ -0,0 +1,72 @@
+package com.kaleyra.socket_io.engineio.parser;
+
+
+/**
+ * The packet types of the Engine.IO protocol, with their wire codes.
+ */
+public enum PacketType {
+    OPEN(Packet.OPEN, 0),
+    CLOSE(Packet.CLOSE, 1),
+    PING(Packet.PING, 2),
+    PONG(Packet.PONG, 3),
+    MESSAGE(Packet.MESSAGE, 4),
+    UPGRADE(Packet.UPGRADE, 5),
+    NOOP(Packet.NOOP, 6),
+    /**
+     * Not part of the protocol; only used for packets the parser failed to decode.
+     */
+    ERROR(Packet.ERROR, -1);
+
+    private static final PacketType[] codes = {OPEN, CLOSE, PING, PONG, MESSAGE, UPGRADE, NOOP};
+
+    /**
+     * The name of the type, as found in {@link Packet#type}.
+     */
+    public final String value;
+
+    /**
+     * The code of the type on the wire, or {@code -1} for {@link #ERROR}.
+     */
+    public final int code;
+
+    /*package*/ final char codeChar;
+
+    PacketType(String value, int code) {
+        this.value = value;
+        this.code = code;
+        this.codeChar = (char) ('0' + code);
+    }
+
+    /**
+     * Returns the type for a wire code.
+     *
+     * @param code the wire code.
+     * @return the type, or {@code null} if the code is unknown.
+     */
+    public static PacketType fromCode(int code) {
+        return code >= 0 && code < codes.length ? codes[code] : null;
+    }
+
+    /**
+     * Returns the type for a name.
+     *
+     * @param value a name such as {@link Packet#MESSAGE}.
+     * @return the type, or {@code null} if the name is unknown.
+     */
+    public static PacketType fromValue(String value) {
+        if (value == null) {
+            return null;
+        }
+        switch (value) {
+            case Packet.OPEN: return OPEN;
+            case Packet.CLOSE: return CLOSE;
+            case Packet.PING: return PING;
+            case Packet.PONG: return PONG;
+            case Packet.MESSAGE: return MESSAGE;
+            case Packet.UPGRADE: return UPGRADE;
+            case Packet.NOOP: return NOOP;
+            case Packet.ERROR: return ERROR;
+            default: return null;
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package com.kaleyra.socket_io.engineio.parser;
 
-import java.util.HashMap;
-import java.util.Map;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Utf8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
 
 public class Parser {
 
@@ -9,44 +16,92 @@ public class Parser {
 
     private static final char SEPARATOR = '\u001e';
 
-    private static final Map<String, Integer> packets = new HashMap<String, Integer>() {{
-        put(Packet.OPEN, 0);
-        put(Packet.CLOSE, 1);
-        put(Packet.PING, 2);
-        put(Packet.PONG, 3);
-        put(Packet.MESSAGE, 4);
-        put(Packet.UPGRADE, 5);
-        put(Packet.NOOP, 6);
-    }};
-
-    private static final Map<Integer, String> packetslist = new HashMap<>();
-    static {
-        for (Map.Entry<String, Integer> entry : packets.entrySet()) {
-            packetslist.put(entry.getValue(), entry.getKey());
-        }
-    }
+    // a multiple of 3 bytes, so the encoder never holds back a tail between chunks
+    private static final int BASE64_CHUNK_INPUT_SIZE = 3 * 1024;
+    // same bound as Base64.Encoder#maxOutputSize, which accounts for line breaks carried across chunks
+    private static final int BASE64_CHUNK_OUTPUT_SIZE = BASE64_CHUNK_INPUT_SIZE * 8 / 5 + 10;
 
-    private static final Packet<String> err = new Packet<String>(Packet.ERROR, "parser error");
+    private static final Packet<String> err = new Packet<String>(PacketType.ERROR, "parser error");
 
     private Parser() {}
 
+    /**
+     * Encodes a packet. Binary data, a {@code byte[]}, {@link ByteBuffer} or {@link ByteString},
+     * is passed to the callback as is; anything else is encoded to a String.
+     *
+     * @param packet the packet to encode.
+     * @param callback receives the encoded packet.
+     */
     public static void encodePacket(Packet packet, EncodeCallback callback) {
-        if (packet.data instanceof byte[]) {
-            ((EncodeCallback<byte[]>) callback).call(((Packet<byte[]>) packet).data);
+        if (isBinary(packet.data)) {
+            callback.call(packet.data);
         } else {
-            String type = String.valueOf(packets.get(packet.type));
             String content = packet.data != null ? String.valueOf(packet.data) : "";
-            ((EncodeCallback<String>) callback).call(type + content);
+            StringBuilder encoded = new StringBuilder(content.length() + 1);
+            appendType(packet, encoded);
+            ((EncodeCallback<String>) callback).call(encoded.append(content).toString());
+        }
+    }
+
+    private static void appendType(Packet packet, StringBuilder builder) {
+        PacketType type = packet.packetType();
+        if (type == null || type == PacketType.ERROR) {
+            // types without a wire code have always been encoded as "null"
+            builder.append("null");
+        } else {
+            builder.append(type.codeChar);
+        }
+    }
+
+    /**
+     * Whether {@code data} is one of the types sent as a binary message.
+     *
+     * @param data the data of a packet.
+     * @return true for a {@code byte[]}, {@link ByteBuffer} or {@link ByteString}.
+     */
+    public static boolean isBinary(Object data) {
+        return data instanceof byte[] || data instanceof ByteBuffer || data instanceof ByteString;
+    }
+
+    /**
+     * Returns a view of binary packet data from its position to its limit, without copying it.
+     */
+    private static ByteBuffer binaryView(Object data) {
+        if (data instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) data);
+        } else if (data instanceof ByteBuffer) {
+            return ((ByteBuffer) data).duplicate();
+        } else {
+            return ((ByteString) data).asByteBuffer();
+        }
+    }
+
+    private static int binaryLength(Object data) {
+        if (data instanceof byte[]) {
+            return ((byte[]) data).length;
+        } else if (data instanceof ByteBuffer) {
+            return ((ByteBuffer) data).remaining();
+        } else {
+            return ((ByteString) data).size();
         }
     }
 
-    private static void encodePacketAsBase64(Packet packet, EncodeCallback<String> callback) {
-        if (packet.data instanceof byte[]) {
-            byte[] data = ((Packet<byte[]>) packet).data;
-            String value = "b" + Base64.encodeToString(data, Base64.DEFAULT);
-            callback.call(value);
+    private static void encodePacketAsBase64(Packet packet, StringBuilder builder) {
+        if (isBinary(packet.data)) {
+            ByteBuffer data = binaryView(packet.data);
+            builder.ensureCapacity(builder.length() + 1 + Base64.encodedLength(data.remaining(), Base64.DEFAULT));
+            builder.append('b');
+            try {
+                Base64.encode(data, Base64.DEFAULT, builder);
+            } catch (IOException e) {
+                // StringBuilder never throws.
+                throw new AssertionError(e);
+            }
         } else {
-            encodePacket(packet, callback);
+            appendType(packet, builder);
+            if (packet.data != null) {
+                builder.append(String.valueOf(packet.data));
+            }
         }
     }
 
@@ -55,21 +110,32 @@ public class Parser {
             return err;
         }
 
-        int type;
-        try {
-            type = Character.getNumericValue(data.charAt(0));
-        } catch (IndexOutOfBoundsException e) {
-            type = -1;
+        return decodePacket(data, 0, data.length());
+    }
+
+    /**
+     * Decodes the packet held in {@code data} between {@code start} (inclusive) and
+     * {@code end} (exclusive), without copying the range out of {@code data} first.
+     *
+     * @param data the encoded packets.
+     * @param start index of the packet type.
+     * @param end index following the last character of the packet.
+     * @return the decoded packet.
+     */
+    public static Packet<String> decodePacket(CharSequence data, int start, int end) {
+        if (start >= end) {
+            return err;
         }
 
-        if (type < 0 || type >= packetslist.size()) {
+        PacketType type = PacketType.fromCode(data.charAt(start) - '0');
+        if (type == null) {
             return err;
         }
 
-        if (data.length() > 1) {
-            return new Packet<String>(packetslist.get(type), data.substring(1));
+        if (end - start > 1) {
+            return new Packet<String>(type, data.subSequence(start + 1, end).toString());
         } else {
-            return new Packet<String>(packetslist.get(type));
+            return new Packet<String>(type);
         }
     }
 
@@ -78,61 +144,276 @@ public class Parser {
             return err;
         }
 
-        if (data.charAt(0) == 'b') {
-            return new Packet(Packet.MESSAGE, Base64.decode(data.substring(1), Base64.DEFAULT));
+        return decodeBase64Packet(data, 0, data.length());
+    }
+
+    /**
+     * Same as {@link #decodeBase64Packet(String)} for the packet held in {@code data}
+     * between {@code start} (inclusive) and {@code end} (exclusive).
+     */
+    public static Packet decodeBase64Packet(CharSequence data, int start, int end) {
+        if (start < end && data.charAt(start) == 'b') {
+            return new Packet(PacketType.MESSAGE, Base64.decode(data, start + 1, end, Base64.DEFAULT));
         } else {
-            return decodePacket(data);
+            return decodePacket(data, start, end);
         }
     }
 
     public static Packet<byte[]> decodePacket(byte[] data) {
-        return new Packet<>(Packet.MESSAGE, data);
+        return new Packet<>(PacketType.MESSAGE, data);
+    }
+
+    public static Packet<ByteString> decodePacket(ByteString data) {
+        return new Packet<>(PacketType.MESSAGE, data);
     }
 
     public static void encodePayload(Packet[] packets, EncodeCallback<String> callback) {
-        if (packets.length == 0) {
+        encodePayload(Arrays.asList(packets), callback);
+    }
+
+    public static void encodePayload(List<Packet> packets, EncodeCallback<String> callback) {
+        if (packets.isEmpty()) {
             callback.call("0:");
             return;
         }
 
-        final StringBuilder result = new StringBuilder();
+        StringBuilder result = new StringBuilder();
 
-        for (int i = 0, l = packets.length; i < l; i++) {
-            final boolean isLast = i == l - 1;
-            encodePacketAsBase64(packets[i], new EncodeCallback<String>() {
-                @Override
-                public void call(String message) {
-                    result.append(message);
-                    if (!isLast) {
-                        result.append(SEPARATOR);
-                    }
-                }
-            });
+        for (int i = 0, l = packets.size(); i < l; i++) {
+            if (i > 0) {
+                result.append(SEPARATOR);
+            }
+            encodePacketAsBase64(packets.get(i), result);
         }
 
         callback.call(result.toString());
     }
 
+    /**
+     * Writes the payload of {@code packets} to {@code sink} as UTF-8, without building
+     * it in memory first. The output is the same as {@link #encodePayload(Packet[], EncodeCallback)}.
+     *
+     * @param packets the packets to encode.
+     * @param sink the destination of the payload.
+     * @throws IOException if writing to the sink fails.
+     */
+    public static void encodePayload(Packet[] packets, BufferedSink sink) throws IOException {
+        encodePayload(Arrays.asList(packets), sink);
+    }
+
+    /**
+     * Same as {@link #encodePayload(Packet[], BufferedSink)}, for packets held in a list.
+     *
+     * @param packets the packets to encode.
+     * @param sink the destination of the payload.
+     * @throws IOException if writing to the sink fails.
+     */
+    public static void encodePayload(List<Packet> packets, BufferedSink sink) throws IOException {
+        if (packets.isEmpty()) {
+            sink.writeUtf8("0:");
+            return;
+        }
+
+        byte[] buffer = null;
+        for (int i = 0, l = packets.size(); i < l; i++) {
+            if (i > 0) {
+                sink.writeByte(SEPARATOR);
+            }
+
+            Packet packet = packets.get(i);
+            if (isBinary(packet.data)) {
+                if (buffer == null) {
+                    buffer = new byte[BASE64_CHUNK_OUTPUT_SIZE];
+                }
+                sink.writeByte('b');
+                writeBase64(binaryView(packet.data), buffer, sink);
+            } else {
+                PacketType type = packet.packetType();
+                if (type == null || type == PacketType.ERROR) {
+                    sink.writeUtf8("null");
+                } else {
+                    sink.writeByte(type.codeChar);
+                }
+                if (packet.data != null) {
+                    sink.writeUtf8(String.valueOf(packet.data));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes {@link #encodePayload(Packet[], BufferedSink)} writes
+     * for {@code packets}.
+     *
+     * @param packets the packets to encode.
+     * @return the length of the payload in bytes.
+     */
+    public static long payloadLength(Packet[] packets) {
+        return payloadLength(Arrays.asList(packets));
+    }
+
+    public static long payloadLength(List<Packet> packets) {
+        if (packets.isEmpty()) {
+            return 2;
+        }
+
+        long length = packets.size() - 1;
+        for (int i = 0, l = packets.size(); i < l; i++) {
+            Packet packet = packets.get(i);
+            if (isBinary(packet.data)) {
+                length += 1 + Base64.encodedLength(binaryLength(packet.data), Base64.DEFAULT);
+            } else {
+                PacketType type = packet.packetType();
+                length += type == null || type == PacketType.ERROR ? 4 : 1;
+                if (packet.data != null) {
+                    length += Utf8.size(String.valueOf(packet.data));
+                }
+            }
+        }
+        return length;
+    }
+
+    private static void writeBase64(ByteBuffer data, byte[] buffer, BufferedSink sink) throws IOException {
+        Base64.Encoder encoder = new Base64.Encoder(Base64.DEFAULT, buffer);
+        byte[] input;
+        int inputOffset;
+        if (data.hasArray()) {
+            input = data.array();
+            inputOffset = data.arrayOffset() + data.position();
+        } else {
+            // read-only and direct buffers are copied a chunk at a time
+            input = new byte[Math.min(BASE64_CHUNK_INPUT_SIZE, data.remaining())];
+            inputOffset = -1;
+        }
+
+        int length = data.remaining();
+        for (int offset = 0; offset < length; offset += BASE64_CHUNK_INPUT_SIZE) {
+            int len = Math.min(BASE64_CHUNK_INPUT_SIZE, length - offset);
+            if (inputOffset < 0) {
+                data.get(input, 0, len);
+                encoder.process(input, 0, len, offset + len == length);
+            } else {
+                encoder.process(input, inputOffset + offset, len, offset + len == length);
+            }
+            sink.write(buffer, 0, encoder.op);
+        }
+    }
+
     public static void decodePayload(String data, DecodePayloadCallback<String> callback) {
         if (data == null || data.length() == 0) {
             callback.call(err, 0, 1);
             return;
         }
 
-        String[] messages = data.split(String.valueOf(SEPARATOR));
+        decodePayload(data, 0, data.length(), callback);
+    }
+
+    /**
+     * Decodes the payload held in {@code data} between {@code start} (inclusive) and
+     * {@code end} (exclusive). Packets are located by scanning for the record separator,
+     * so no intermediate array or per-packet substring is created.
+     *
+     * @param data the encoded payload.
+     * @param start index of the first character of the payload.
+     * @param end index following the last character of the payload.
+     * @param callback called for each decoded packet.
+     */
+    public static void decodePayload(CharSequence data, int start, int end, DecodePayloadCallback<String> callback) {
+        // trailing separators do not delimit any packet
+        while (end > start && data.charAt(end - 1) == SEPARATOR) {
+            end--;
+        }
+
+        int total = 1;
+        for (int i = start; i < end; i++) {
+            if (data.charAt(i) == SEPARATOR) {
+                total++;
+            }
+        }
 
-        for (int i = 0, l = messages.length; i < l; i++) {
-            Packet<String> packet = decodeBase64Packet(messages[i]);
-            if (err.type.equals(packet.type) && err.data.equals(packet.data)) {
+        int packetStart = start;
+        for (int i = 0; i < total; i++) {
+            int packetEnd = indexOfSeparator(data, packetStart, end);
+            Packet<String> packet = decodeBase64Packet(data, packetStart, packetEnd);
+            if (packet == err) {
                 callback.call(err, 0, 1);
                 return;
             }
 
-            boolean ret = callback.call(packet, i, l);
+            boolean ret = callback.call(packet, i, total);
             if (!ret) {
                 return;
             }
+            packetStart = packetEnd + 1;
+        }
+    }
+
+    /**
+     * Decodes a payload while it is read from {@code source}. Each packet is handed to
+     * the callback as soon as its separator has been read, so only one packet at a time
+     * is held in memory. As the number of packets is not known in advance, the callback
+     * receives {@code -1} as total.
+     *
+     * @param source the encoded payload.
+     * @param callback called for each decoded packet. Return {@code false} to stop reading.
+     * @throws IOException if reading from the source fails.
+     */
+    public static void decodePayload(BufferedSource source, DecodePayloadCallback<String> callback) throws IOException {
+        if (source.exhausted()) {
+            callback.call(err, 0, 1);
+            return;
+        }
+
+        for (int i = 0; !source.exhausted(); i++) {
+            String message;
+            long separator = source.indexOf((byte) SEPARATOR);
+            if (separator == -1) {
+                message = source.readUtf8();
+            } else {
+                message = source.readUtf8(separator);
+                source.skip(1);
+            }
+
+            if (message.isEmpty() && skipSeparators(source)) {
+                // trailing separators do not delimit any packet, as with the other overloads
+                if (i == 0) {
+                    callback.call(err, 0, 1);
+                }
+                return;
+            }
+
+            Packet<String> packet = decodeBase64Packet(message);
+            if (packet == err) {
+                callback.call(err, 0, 1);
+                return;
+            }
+
+            boolean ret = callback.call(packet, i, -1);
+            if (!ret) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skips the separators at the head of {@code source}.
+     *
+     * @return true if nothing else was left.
+     */
+    private static boolean skipSeparators(BufferedSource source) throws IOException {
+        while (source.request(1) && source.buffer().getByte(0) == SEPARATOR) {
+            source.skip(1);
+        }
+        return source.exhausted();
+    }
+
+    private static int indexOfSeparator(CharSequence data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (data.charAt(i) == SEPARATOR) {
+                return i;
+            }
         }
+        return end;
     }
 
     public interface EncodeCallback<T> {
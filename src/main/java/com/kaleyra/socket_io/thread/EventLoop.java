@@ -0,0 +1,32 @@
+package com.kaleyra.socket_io.thread;
+
+
+/**
+ * An event loop runs the tasks of a socket and its transports one at a time, in order.
+ *
+ * @see EventThread#LOOP
+ * @see EventLoopGroup
+ */
+public interface EventLoop {
+
+    /**
+     * check if the current thread is running this loop.
+     *
+     * @return true if the current thread is running this loop.
+     */
+    boolean isCurrent();
+
+    /**
+     * Executes a task in this loop, right away if called from the loop itself.
+     *
+     * @param task
+     */
+    void exec(Runnable task);
+
+    /**
+     * Executes a task on the next iteration of this loop.
+     *
+     * @param task
+     */
+    void nextTick(Runnable task);
+}
@@ -0,0 +1,106 @@
+package com.kaleyra.socket_io.thread;
+
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A fixed set of event loops, each running in its own thread. Sockets given a loop from
+ * {@link #next()} are spread over the set and each stays pinned to its loop, so sockets
+ * no longer all share the single {@link EventThread}.
+ */
+public class EventLoopGroup {
+
+    private static final Logger logger = Logger.getLogger(EventLoopGroup.class.getName());
+
+    private static final AtomicInteger GROUP_COUNTER = new AtomicInteger();
+
+    private final Loop[] loops;
+    private final AtomicInteger index = new AtomicInteger();
+
+    /**
+     * Creates a group of event loops.
+     *
+     * @param size number of loops, usually the number of available processors.
+     */
+    public EventLoopGroup(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        int group = GROUP_COUNTER.getAndIncrement();
+        this.loops = new Loop[size];
+        for (int i = 0; i < size; i++) {
+            this.loops[i] = new Loop("EventLoop-" + group + "-" + i);
+        }
+    }
+
+    /**
+     * Returns the loop to pin the next socket to, in round-robin order.
+     *
+     * @return an event loop of this group.
+     */
+    public EventLoop next() {
+        return this.loops[(this.index.getAndIncrement() & Integer.MAX_VALUE) % this.loops.length];
+    }
+
+    /**
+     * Stops the threads of this group once their pending tasks are done.
+     */
+    public void shutdown() {
+        for (Loop loop : this.loops) {
+            loop.executor.shutdown();
+        }
+    }
+
+    private static class Loop implements EventLoop {
+
+        private final ExecutorService executor;
+        private volatile Thread thread;
+
+        Loop(final String name) {
+            this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    Loop.this.thread = thread;
+                    return thread;
+                }
+            });
+        }
+
+        @Override
+        public boolean isCurrent() {
+            return Thread.currentThread() == this.thread;
+        }
+
+        @Override
+        public void exec(Runnable task) {
+            if (this.isCurrent()) {
+                task.run();
+            } else {
+                this.nextTick(task);
+            }
+        }
+
+        @Override
+        public void nextTick(final Runnable task) {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        logger.log(Level.SEVERE, "Task threw exception", t);
+                        throw t;
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.kaleyra.socket_io.thread;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Measures the health of {@link EventThread}: how long tasks wait in the queue, how many are
+ * waiting, and how long each one runs. Install it with {@link EventThread#setMonitor}.
+ *
+ * The time of each task is attributed to its owner, the socket that queued it, so a socket
+ * whose listeners hold up the thread, and with it the heartbeats of every other socket, can
+ * be found from {@link #snapshot()} or from the {@link Listener} called for slow tasks.
+ */
+public class EventLoopMonitor {
+
+    private static final Logger logger = Logger.getLogger(EventLoopMonitor.class.getName());
+
+    private final long slowTaskThreshold;
+    private final boolean captureStackTraces;
+    private final Listener listener;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private volatile Task running;
+    private volatile boolean stopped;
+
+    // guarded by this, written by the loop thread only
+    private long tasks;
+    private long slowTasks;
+    private int maxQueueDepth;
+    private long totalLag;
+    private long maxLag;
+    private long totalRunTime;
+    private long maxRunTime;
+    private final Map<Object, long[]> owners = new WeakHashMap<Object, long[]>();
+
+    public EventLoopMonitor() {
+        this(new Options());
+    }
+
+    public EventLoopMonitor(Options opts) {
+        this.slowTaskThreshold = TimeUnit.MILLISECONDS.toNanos(opts.slowTaskThreshold);
+        this.captureStackTraces = opts.captureStackTraces;
+        this.listener = opts.listener;
+    }
+
+    /**
+     * Returns the figures measured since this monitor was created or last reset.
+     *
+     * @return a snapshot of the figures.
+     */
+    public synchronized Stats snapshot() {
+        Stats stats = new Stats();
+        stats.tasks = this.tasks;
+        stats.slowTasks = this.slowTasks;
+        stats.queueDepth = this.queueDepth.get();
+        stats.maxQueueDepth = this.maxQueueDepth;
+        stats.totalLag = this.totalLag;
+        stats.maxLag = this.maxLag;
+        stats.totalRunTime = this.totalRunTime;
+        stats.maxRunTime = this.maxRunTime;
+        stats.runTimeByOwner = new HashMap<Object, Long>();
+        for (Map.Entry<Object, long[]> entry : this.owners.entrySet()) {
+            stats.runTimeByOwner.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return stats;
+    }
+
+    /**
+     * Clears the figures, except the current queue depth.
+     */
+    public synchronized void reset() {
+        this.tasks = 0;
+        this.slowTasks = 0;
+        this.maxQueueDepth = 0;
+        this.totalLag = 0;
+        this.maxLag = 0;
+        this.totalRunTime = 0;
+        this.maxRunTime = 0;
+        this.owners.clear();
+    }
+
+    /*package*/ Runnable wrap(Runnable task, Object owner) {
+        this.queueDepth.incrementAndGet();
+        return new Task(task, owner, System.nanoTime());
+    }
+
+    /*package*/ void start() {
+        if (!this.captureStackTraces || this.slowTaskThreshold <= 0) return;
+
+        Thread watchdog = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                EventLoopMonitor.this.watch();
+            }
+        }, "EventLoopMonitor");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    /*package*/ void stop() {
+        this.stopped = true;
+    }
+
+    private void watch() {
+        long interval = Math.max(TimeUnit.MILLISECONDS.toNanos(1), this.slowTaskThreshold / 2);
+        while (!this.stopped) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            Task task = this.running;
+            if (task != null && task.stackTrace == null
+                    && System.nanoTime() - task.started >= this.slowTaskThreshold) {
+                // taken while the task still runs, to show where it is stuck
+                task.stackTrace = task.runner.getStackTrace();
+            }
+        }
+    }
+
+    private void run(Task task) {
+        this.queueDepth.decrementAndGet();
+        task.runner = Thread.currentThread();
+        task.started = System.nanoTime();
+        this.running = task;
+        try {
+            task.task.run();
+        } finally {
+            this.running = null;
+            long runTime = System.nanoTime() - task.started;
+            long lag = task.started - task.queued;
+            boolean slow = this.slowTaskThreshold > 0 && runTime >= this.slowTaskThreshold;
+            this.record(task.owner, lag, runTime, slow);
+
+            if (slow) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine(String.format("slow task of %s ran for %d ms", task.owner,
+                            TimeUnit.NANOSECONDS.toMillis(runTime)));
+                }
+                if (this.listener != null) {
+                    this.listener.onSlowTask(new SlowTask(task.owner, task.task, lag, runTime, task.stackTrace));
+                }
+            }
+        }
+    }
+
+    private synchronized void record(Object owner, long lag, long runTime, boolean slow) {
+        this.tasks++;
+        if (slow) this.slowTasks++;
+        this.maxQueueDepth = Math.max(this.maxQueueDepth, this.queueDepth.get() + 1);
+        this.totalLag += lag;
+        this.maxLag = Math.max(this.maxLag, lag);
+        this.totalRunTime += runTime;
+        this.maxRunTime = Math.max(this.maxRunTime, runTime);
+        if (owner != null) {
+            long[] ownerRunTime = this.owners.get(owner);
+            if (ownerRunTime == null) {
+                ownerRunTime = new long[1];
+                this.owners.put(owner, ownerRunTime);
+            }
+            ownerRunTime[0] += runTime;
+        }
+    }
+
+    private final class Task implements Runnable {
+
+        final Runnable task;
+        final Object owner;
+        final long queued;
+        volatile Thread runner;
+        volatile long started;
+        volatile StackTraceElement[] stackTrace;
+
+        Task(Runnable task, Object owner, long queued) {
+            this.task = task;
+            this.owner = owner;
+            this.queued = queued;
+        }
+
+        @Override
+        public void run() {
+            EventLoopMonitor.this.run(this);
+        }
+    }
+
+    /**
+     * Figures of the monitored loop. Times are in nanoseconds; lag is the time a task waited
+     * in the queue before it ran.
+     */
+    public static class Stats {
+
+        public long tasks;
+        public long slowTasks;
+
+        /**
+         * Tasks waiting when the snapshot was taken.
+         */
+        public int queueDepth;
+        public int maxQueueDepth;
+        public long totalLag;
+        public long maxLag;
+        public long totalRunTime;
+        public long maxRunTime;
+
+        /**
+         * Run time of the tasks of each owner, usually a socket. Tasks queued with no owner
+         * are left out.
+         */
+        public Map<Object, Long> runTimeByOwner;
+    }
+
+    /**
+     * A task that ran for longer than {@link Options#slowTaskThreshold}.
+     */
+    public static class SlowTask {
+
+        public final Object owner;
+        public final Runnable task;
+        public final long lag;
+        public final long runTime;
+
+        /**
+         * Where the task was while it ran too long, or null when not captured.
+         */
+        public final StackTraceElement[] stackTrace;
+
+        SlowTask(Object owner, Runnable task, long lag, long runTime, StackTraceElement[] stackTrace) {
+            this.owner = owner;
+            this.task = task;
+            this.lag = lag;
+            this.runTime = runTime;
+            this.stackTrace = stackTrace;
+        }
+    }
+
+    public interface Listener {
+
+        /**
+         * Called on the loop thread after a slow task has run. Must not block.
+         *
+         * @param task the slow task.
+         */
+        void onSlowTask(SlowTask task);
+    }
+
+    public static class Options {
+
+        /**
+         * Run time in milliseconds above which a task is slow. Defaults to `100`; `0`
+         * disables slow task detection.
+         */
+        public long slowTaskThreshold = 100;
+
+        /**
+         * Whether to capture the stack trace of slow tasks while they run, from a watchdog
+         * thread checking the loop twice per threshold.
+         */
+        public boolean captureStackTraces;
+
+        public Listener listener;
+    }
+}
@@ -1,39 +1,89 @@
 package com.kaleyra.socket_io.thread;
 
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
 /**
  * The thread for event loop. All non-background tasks run within this thread.
+ *
+ * Tasks are queued without locking and drained by a single EventThread, which stays alive
+ * while tasks keep coming and stops once it has been idle for the idle timeout. A new
+ * EventThread is started on the next task after that.
  */
 public class EventThread extends Thread {
 
     private static final Logger logger = Logger.getLogger(EventThread.class.getName());
 
-    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+    private static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+
+    private static final AtomicBoolean running = new AtomicBoolean();
+
+    private static volatile EventThread thread;
+
+    private static volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    private static volatile EventLoopMonitor monitor;
+
+    /**
+     * The event loop running in the shared EventThread, used by sockets that are not given one.
+     */
+    public static final EventLoop LOOP = new EventLoop() {
+        @Override
+        public boolean isCurrent() {
+            return EventThread.isCurrent();
+        }
+
+        @Override
+        public void exec(Runnable task) {
+            EventThread.exec(task);
+        }
+
         @Override
-        public Thread newThread(Runnable runnable) {
-            thread = new EventThread(runnable);
-            thread.setName("EventThread");
-            thread.setDaemon(Thread.currentThread().isDaemon());
-            return thread;
+        public void nextTick(Runnable task) {
+            EventThread.nextTick(task);
         }
     };
 
-    private static EventThread thread;
+    private volatile boolean parked;
+
+    /**
+     * Returns an event loop running in the shared EventThread whose tasks are attributed to
+     * {@code owner} by the {@link EventLoopMonitor}.
+     *
+     * @param owner the owner of the tasks, usually a socket.
+     * @return an event loop.
+     */
+    public static EventLoop loop(final Object owner) {
+        return new EventLoop() {
+            @Override
+            public boolean isCurrent() {
+                return EventThread.isCurrent();
+            }
 
-    private static ExecutorService service;
+            @Override
+            public void exec(Runnable task) {
+                EventThread.exec(task, owner);
+            }
 
-    private static int counter = 0;
+            @Override
+            public void nextTick(Runnable task) {
+                EventThread.nextTick(task, owner);
+            }
+        };
+    }
 
 
-    private EventThread(Runnable runnable) {
-        super(runnable);
+    private EventThread() {
+        super("EventThread");
     }
 
     /**
@@ -51,10 +101,21 @@ public class EventThread extends Thread {
      * @param task
      */
     public static void exec(Runnable task) {
+        exec(task, null);
+    }
+
+    /**
+     * Executes a task in EventThread, on behalf of {@code owner}.
+     *
+     * @param task
+     * @param owner the owner the task is attributed to, or null.
+     */
+    public static void exec(Runnable task, Object owner) {
         if (isCurrent()) {
+            // part of the running task
             task.run();
         } else {
-            nextTick(task);
+            nextTick(task, owner);
         }
     }
 
@@ -63,35 +124,122 @@ public class EventThread extends Thread {
      *
      * @param task
      */
-    public static void nextTick(final Runnable task) {
-        ExecutorService executor;
-        synchronized (EventThread.class) {
-          counter++;
-          if (service == null) {
-              service = Executors.newSingleThreadExecutor(THREAD_FACTORY);
-          }
-          executor = service;
+    public static void nextTick(Runnable task) {
+        nextTick(task, null);
+    }
+
+    /**
+     * Executes a task on the next loop in EventThread, on behalf of {@code owner}.
+     *
+     * @param task
+     * @param owner the owner the task is attributed to, or null.
+     */
+    public static void nextTick(Runnable task, Object owner) {
+        if (task == null) {
+            throw new NullPointerException("task");
         }
+        EventLoopMonitor monitor = EventThread.monitor;
+        queue.offer(monitor != null ? monitor.wrap(task, owner) : task);
 
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    task.run();
-                } catch (Throwable t) {
-                    logger.log(Level.SEVERE, "Task threw exception", t);
-                    throw t;
-                } finally {
-                    synchronized (EventThread.class) {
-                        counter--;
-                        if (counter == 0) {
-                            service.shutdown();
-                            service = null;
-                            thread = null;
-                        }
-                    }
+        if (!running.get() && running.compareAndSet(false, true)) {
+            start(Thread.currentThread().isDaemon());
+            return;
+        }
+        EventThread current = thread;
+        if (current != null && current.parked) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    /**
+     * Sets how long EventThread waits for new tasks before it stops. Defaults to one second.
+     *
+     * @param timeout the idle timeout, {@code 0} to stop as soon as the queue is empty.
+     * @param unit the unit of {@code timeout}.
+     */
+    public static void setIdleTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative: " + timeout);
+        }
+        idleTimeout = unit.toNanos(timeout);
+    }
+
+    /**
+     * Sets the monitor measuring the tasks queued from now on, replacing the previous one.
+     *
+     * @param monitor the monitor, or null to stop monitoring.
+     */
+    public static synchronized void setMonitor(EventLoopMonitor monitor) {
+        EventLoopMonitor previous = EventThread.monitor;
+        EventThread.monitor = monitor;
+        if (previous != null) {
+            previous.stop();
+        }
+        if (monitor != null) {
+            monitor.start();
+        }
+    }
+
+    public static EventLoopMonitor getMonitor() {
+        return monitor;
+    }
+
+    private static void start(boolean daemon) {
+        EventThread eventThread = new EventThread();
+        eventThread.setDaemon(daemon);
+        thread = eventThread;
+        try {
+            eventThread.start();
+        } catch (Throwable t) {
+            running.set(false);
+            throw t;
+        }
+    }
+
+    @Override
+    public void run() {
+        for (;;) {
+            Runnable task = queue.poll();
+            if (task == null) {
+                task = this.awaitTask();
+            }
+            if (task == null) {
+                running.set(false);
+                // a task may have been queued after the last poll, while the
+                // submitter still saw this thread running
+                if (queue.isEmpty() || !running.compareAndSet(false, true)) {
+                    return;
                 }
+                continue;
+            }
+
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.log(Level.SEVERE, "Task threw exception", t);
             }
-        });
+        }
+    }
+
+    private Runnable awaitTask() {
+        long deadline = System.nanoTime() + idleTimeout;
+        for (;;) {
+            this.parked = true;
+            // checked after publishing parked, so a submitter either sees it
+            // and unparks this thread or has its task found here
+            Runnable task = queue.poll();
+            if (task == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                    task = queue.poll();
+                }
+            }
+            this.parked = false;
+
+            if (task != null || deadline - System.nanoTime() <= 0) {
+                return task;
+            }
+        }
     }
 }
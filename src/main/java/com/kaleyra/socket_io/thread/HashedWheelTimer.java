@@ -0,0 +1,231 @@
+package com.kaleyra.socket_io.thread;
+
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A timer for many coarse deadlines, driven by one thread. Timeouts are hashed into the
+ * buckets of a wheel that advances one bucket per tick, so a timeout fires on the first
+ * tick after its deadline.
+ *
+ * A {@link Timeout} keeps its deadline as a timestamp, and the wheel checks it again when
+ * it reaches the timeout's bucket. Postponing a deadline with {@link Timeout#refresh} is
+ * therefore only a write and a read of the state, which suits deadlines pushed back on every
+ * inbound packet.
+ */
+public class HashedWheelTimer {
+
+    private static final Logger logger = Logger.getLogger(HashedWheelTimer.class.getName());
+
+    private static final int ACTIVE = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    // taken by the wheel while it checks the deadline one last time
+    private static final int EXPIRING = 3;
+
+    private final String name;
+    private final long tickDuration;
+    private final Timeout[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean stopped;
+    private volatile long startTime;
+    private long tick;
+
+    /**
+     * Creates a timer. Its thread is started when the first timeout is added.
+     *
+     * @param name the name of the timer thread.
+     * @param tickDuration the time between two ticks, which is the precision of the timer.
+     * @param unit the unit of {@code tickDuration}.
+     * @param ticksPerWheel the number of buckets, rounded up to a power of two.
+     */
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("ticksPerWheel out of range: " + ticksPerWheel);
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.name = name;
+        this.tickDuration = unit.toNanos(tickDuration);
+        this.wheel = new Timeout[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedules a task. The task runs in the timer thread, so it should only hand work over
+     * to another thread, e.g. with {@link EventLoop#exec}.
+     *
+     * @param task the task to run once the deadline is reached.
+     * @param delay the time from now to the deadline.
+     * @param unit the unit of {@code delay}.
+     * @return a handle to refresh or cancel the deadline.
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (this.stopped) {
+            throw new IllegalStateException("timer is stopped");
+        }
+        if (!this.started.get() && this.started.compareAndSet(false, true)) {
+            this.start();
+        }
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(delay));
+        this.pending.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the timer thread. Timeouts that did not fire yet never will.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    private void start() {
+        this.startTime = System.nanoTime();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                HashedWheelTimer.this.work();
+            }
+        }, this.name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void work() {
+        long startTime = this.startTime;
+        while (!this.stopped) {
+            long tickDeadline = startTime + (this.tick + 1) * this.tickDuration;
+            long sleep;
+            while ((sleep = tickDeadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleep);
+                if (this.stopped) return;
+            }
+
+            Timeout timeout;
+            while ((timeout = this.pending.poll()) != null) {
+                if (timeout.state.get() == ACTIVE) {
+                    this.schedule(timeout);
+                }
+            }
+            this.expire(this.wheel[(int) (this.tick & this.mask)], tickDeadline);
+            this.tick++;
+        }
+    }
+
+    private void schedule(Timeout timeout) {
+        long ticks = (timeout.deadline - this.startTime) / this.tickDuration;
+        int index = (int) (Math.max(ticks, this.tick) & this.mask);
+        timeout.next = this.wheel[index];
+        this.wheel[index] = timeout;
+    }
+
+    private void expire(Timeout head, long now) {
+        this.wheel[(int) (this.tick & this.mask)] = null;
+        while (head != null) {
+            Timeout timeout = head;
+            head = head.next;
+            timeout.next = null;
+
+            if (timeout.state.get() != ACTIVE) continue;
+            if (timeout.deadline - now > 0) {
+                // postponed since it was scheduled, or due in a later round
+                this.schedule(timeout);
+                continue;
+            }
+            if (!timeout.state.compareAndSet(ACTIVE, EXPIRING)) continue;
+            // a refresh may have landed since the deadline was read; it either sees
+            // EXPIRING and waits for the outcome, or wrote the deadline read here
+            if (timeout.deadline - now > 0) {
+                timeout.state.set(ACTIVE);
+                this.schedule(timeout);
+                continue;
+            }
+            timeout.state.set(EXPIRED);
+            try {
+                timeout.task.run();
+            } catch (Throwable t) {
+                logger.log(Level.SEVERE, "Timer task threw exception", t);
+            }
+        }
+    }
+
+    /**
+     * A deadline scheduled on a {@link HashedWheelTimer}.
+     */
+    public static final class Timeout {
+
+        private final Runnable task;
+        private final AtomicInteger state = new AtomicInteger(ACTIVE);
+        private volatile long deadline;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Moves the deadline to the given time from now. Meant to postpone it: a deadline
+         * moved earlier may fire late, on the tick it was scheduled for before.
+         *
+         * @param delay the time from now to the new deadline.
+         * @param unit the unit of {@code delay}.
+         * @return false if the timeout already fired or was cancelled; when true, the task
+         * does not run before the new deadline.
+         */
+        public boolean refresh(long delay, TimeUnit unit) {
+            if (this.state.get() != ACTIVE) return false;
+            this.deadline = System.nanoTime() + unit.toNanos(delay);
+            return this.settledState() == ACTIVE;
+        }
+
+        /**
+         * Cancels the timeout.
+         *
+         * @return false if the timeout already fired or was cancelled.
+         */
+        public boolean cancel() {
+            for (;;) {
+                if (this.state.compareAndSet(ACTIVE, CANCELLED)) return true;
+                if (this.settledState() != ACTIVE) return false;
+            }
+        }
+
+        /**
+         * Returns the state, once the wheel is done with a last check of the deadline.
+         */
+        private int settledState() {
+            int state;
+            while ((state = this.state.get()) == EXPIRING) {
+                Thread.yield();
+            }
+            return state;
+        }
+
+        public boolean isExpired() {
+            return this.state.get() == EXPIRED;
+        }
+
+        public boolean isCancelled() {
+            return this.state.get() == CANCELLED;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.kaleyra.socket_io.thread;
+
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * An event loop running its tasks one at a time, in order, on threads borrowed from an
+ * {@link Executor}. No thread is held while the loop is idle, so every socket can have a
+ * loop of its own, and a listener that blocks only delays the tasks of its socket.
+ */
+public class SerialEventLoop implements EventLoop {
+
+    private static final Logger logger = Logger.getLogger(SerialEventLoop.class.getName());
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final Executor executor;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile Thread thread;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            SerialEventLoop.this.drain();
+        }
+    };
+
+    /**
+     * Creates a loop running its tasks on {@code executor}.
+     *
+     * @param executor runs the loop; it may run many loops, each one using a single thread at a time.
+     */
+    public SerialEventLoop(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a loop running on virtual threads. When the runtime has no virtual threads
+     * (before JDK 21), the loop runs on a shared pool of daemon platform threads instead.
+     *
+     * @return a new loop.
+     */
+    public static SerialEventLoop ofVirtualThreads() {
+        return new SerialEventLoop(SharedExecutor.INSTANCE);
+    }
+
+    /**
+     * Whether the runtime supports virtual threads.
+     *
+     * @return true if {@link #ofVirtualThreads()} runs loops on virtual threads.
+     */
+    public static boolean virtualThreadsSupported() {
+        return SharedExecutor.VIRTUAL;
+    }
+
+    @Override
+    public boolean isCurrent() {
+        return Thread.currentThread() == this.thread;
+    }
+
+    @Override
+    public void exec(Runnable task) {
+        if (this.isCurrent()) {
+            task.run();
+        } else {
+            this.nextTick(task);
+        }
+    }
+
+    @Override
+    public void nextTick(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        this.queue.offer(task);
+        if (!this.scheduled.get() && this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this.drain);
+            } catch (RuntimeException e) {
+                this.scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        this.thread = Thread.currentThread();
+        for (;;) {
+            Runnable task = this.queue.poll();
+            if (task == null) {
+                // cleared before the loop is given up: once it is, another drain may
+                // start, and must not have its thread cleared by this one
+                this.thread = null;
+                this.scheduled.set(false);
+                // a task may have been queued after the last poll, while the
+                // submitter still saw this loop scheduled
+                if (this.queue.isEmpty() || !this.scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+                this.thread = Thread.currentThread();
+                continue;
+            }
+
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.log(Level.SEVERE, "Task threw exception", t);
+            }
+        }
+    }
+
+    /**
+     * The executor shared by the loops of {@link #ofVirtualThreads()}, resolved on first use.
+     */
+    private static final class SharedExecutor {
+
+        static final boolean VIRTUAL;
+        static final Executor INSTANCE;
+
+        static {
+            ExecutorService executor = newVirtualThreadPerTaskExecutor();
+            VIRTUAL = executor != null;
+            INSTANCE = executor != null ? executor : Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SerialEventLoop-" + THREAD_COUNTER.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        private static ExecutorService newVirtualThreadPerTaskExecutor() {
+            // looked up reflectively, so the library still runs on older JDKs
+            try {
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) method.invoke(null);
+            } catch (Exception e) {
+                logger.log(Level.FINE, "virtual threads not available", e);
+                return null;
+            }
+        }
+    }
+}
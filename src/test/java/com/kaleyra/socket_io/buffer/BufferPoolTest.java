@@ -0,0 +1,50 @@
+package com.kaleyra.socket_io.buffer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class BufferPoolTest {
+
+    @Test
+    public void reuseReleasedBuffer() {
+        BufferPool pool = new BufferPool(64, 1);
+        PooledBuffer buffer = pool.acquire();
+        assertThat(buffer.buffer().capacity(), is(64));
+        buffer.buffer().put((byte) 1);
+
+        buffer.release();
+        assertThat(pool.pooled(), is(1));
+
+        PooledBuffer reused = pool.acquire();
+        assertThat(reused, is(sameInstance(buffer)));
+        assertThat(reused.buffer().position(), is(0));
+        assertThat(pool.pooled(), is(0));
+    }
+
+    @Test
+    public void keepAtMostMaxPooled() {
+        BufferPool pool = new BufferPool(64, 1);
+        PooledBuffer first = pool.acquire();
+        PooledBuffer second = pool.acquire();
+        assertThat(second, is(not(sameInstance(first))));
+
+        first.release();
+        second.release();
+
+        assertThat(pool.pooled(), is(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releaseTwice() {
+        PooledBuffer buffer = new BufferPool(64, 1).acquire();
+        buffer.release();
+        buffer.release();
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -225,4 +226,40 @@ public class EmitterTest {
         Emitter emitter = new Emitter();
         assertThat(emitter.hasListeners("foo"), is(false));
     }
+
+    @Test
+    public void onWhenCalledFromEvent() {
+        final Emitter emitter = new Emitter();
+        final List<String> calls = new ArrayList<String>();
+        final Emitter.Listener b = new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                calls.add("b");
+            }
+        };
+        emitter.on("tobi", new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                calls.add("a");
+                emitter.on("tobi", b);
+            }
+        });
+        emitter.emit("tobi");
+        assertThat(calls, is(Arrays.asList("a")));
+        emitter.emit("tobi");
+        assertThat(calls, is(Arrays.asList("a", "a", "b")));
+    }
+
+    @Test
+    public void hasListenersAfterOffLast() {
+        Emitter emitter = new Emitter();
+        Emitter.Listener fn = new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {}
+        };
+        emitter.on("foo", fn);
+        emitter.off("foo", fn);
+        assertThat(emitter.hasListeners("foo"), is(false));
+        assertThat(emitter.listeners("foo").size(), is(0));
+    }
 }
@@ -0,0 +1,53 @@
+package com.kaleyra.socket_io.engineio.client;
+
+import com.kaleyra.socket_io.engineio.parser.PacketType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class CountingSocketMetricsTest {
+
+    @Test
+    public void countPacketsByType() {
+        CountingSocketMetrics metrics = new CountingSocketMetrics();
+        metrics.packetSent(PacketType.MESSAGE, 5);
+        metrics.packetSent(PacketType.MESSAGE, 3);
+        metrics.packetSent(PacketType.PONG, 0);
+        metrics.packetReceived(PacketType.PING, 0);
+
+        assertThat(metrics.packetsSent(PacketType.MESSAGE), is(2L));
+        assertThat(metrics.bytesSent(PacketType.MESSAGE), is(8L));
+        assertThat(metrics.packetsSent(PacketType.PONG), is(1L));
+        assertThat(metrics.packetsReceived(PacketType.PING), is(1L));
+        assertThat(metrics.packetsReceived(PacketType.MESSAGE), is(0L));
+    }
+
+    @Test
+    public void trackWriteBufferDepth() {
+        CountingSocketMetrics metrics = new CountingSocketMetrics();
+        // two sockets sharing the metrics
+        metrics.writeBufferChanged(1, 1);
+        metrics.writeBufferChanged(1, 2);
+        metrics.writeBufferChanged(1, 1);
+        assertThat(metrics.writeBufferDepth(), is(3));
+        metrics.writeBufferChanged(-2, 0);
+        metrics.writeBufferChanged(-1, 0);
+
+        assertThat(metrics.writeBufferDepth(), is(0));
+        assertThat(metrics.maxWriteBufferDepth(), is(3));
+    }
+
+    @Test
+    public void countFlushes() {
+        CountingSocketMetrics metrics = new CountingSocketMetrics();
+        metrics.flushed(4);
+        metrics.flushed(6);
+
+        assertThat(metrics.flushes(), is(2L));
+        assertThat(metrics.flushedPackets(), is(10L));
+    }
+}
@@ -0,0 +1,102 @@
+package com.kaleyra.socket_io.engineio.client;
+
+import com.kaleyra.socket_io.engineio.parser.Packet;
+import com.kaleyra.socket_io.engineio.parser.PacketType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A transport that keeps what it is asked to write, and drains or receives on demand.
+ */
+class FakeTransport extends Transport {
+
+    static final String HANDSHAKE = "{\"sid\":\"abc\",\"upgrades\":[],\"pingInterval\":25000,\"pingTimeout\":20000}";
+
+    final List<List<Packet>> writes = new ArrayList<List<Packet>>();
+
+    FakeTransport(Options opts) {
+        super(opts);
+        this.name = "fake";
+    }
+
+    /**
+     * Opens a socket over a fake transport, up to the handshake.
+     *
+     * @param opts options of the socket, whose event loop must be set.
+     * @return the transport of the socket.
+     */
+    static FakeTransport connect(Socket.Options opts) {
+        return connect(opts, HANDSHAKE);
+    }
+
+    /**
+     * Opens a socket over a fake transport, up to the given handshake.
+     *
+     * @param opts options of the socket, whose event loop must be set.
+     * @param handshake the data of the open packet.
+     * @return the transport of the socket.
+     */
+    static FakeTransport connect(final Socket.Options opts, String handshake) {
+        final FakeTransport[] created = new FakeTransport[1];
+        Socket socket = new Socket(opts) {
+            @Override
+            Transport createTransport(String name) {
+                Transport.Options options = new Transport.Options();
+                options.query = new HashMap<String, String>();
+                options.socket = this;
+                options.eventLoop = opts.eventLoop;
+                options.metrics = opts.metrics;
+                options.tracer = opts.tracer;
+                options.traceSampleInterval = opts.traceSampleInterval;
+                created[0] = new FakeTransport(options);
+                return created[0];
+            }
+        };
+        socket.open();
+        created[0].receive(new Packet<String>(PacketType.OPEN, handshake));
+        return created[0];
+    }
+
+    Socket socket() {
+        return this.socket;
+    }
+
+    void receive(Packet packet) {
+        this.onPacket(packet);
+    }
+
+    /**
+     * Completes the oldest write.
+     */
+    void drain() {
+        this.writable = true;
+        this.emit(EVENT_DRAIN);
+    }
+
+    List<Packet> lastWrite() {
+        return this.writes.get(this.writes.size() - 1);
+    }
+
+    @Override
+    protected void write(Packet[] packets) {
+        this.write(Arrays.asList(packets));
+    }
+
+    @Override
+    protected void write(List<Packet> packets) {
+        this.writable = false;
+        this.writes.add(new ArrayList<Packet>(packets));
+    }
+
+    @Override
+    protected void doOpen() {
+        this.onOpen();
+    }
+
+    @Override
+    protected void doClose() {
+    }
+}
@@ -0,0 +1,165 @@
+package com.kaleyra.socket_io.engineio.client;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class HttpTimingsTest {
+
+    @Test
+    public void histogram() {
+        HttpTimings.Histogram histogram = new HttpTimings.Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertThat(histogram.count(), is(100L));
+        assertThat(histogram.mean(TimeUnit.MICROSECONDS), is(50500L));
+        assertThat(histogram.max(TimeUnit.MILLISECONDS), is(100L));
+
+        long p50 = histogram.percentile(50, TimeUnit.MICROSECONDS);
+        assertThat(p50 >= 50000 && p50 <= 100000, is(true));
+        assertThat(histogram.percentile(100, TimeUnit.MILLISECONDS), is(100L));
+    }
+
+    @Test
+    public void emptyHistogram() {
+        HttpTimings.Histogram histogram = new HttpTimings.Histogram();
+        assertThat(histogram.mean(TimeUnit.MILLISECONDS), is(0L));
+        assertThat(histogram.percentile(99, TimeUnit.MILLISECONDS), is(0L));
+    }
+
+    // never executed, the tests call the listener as OkHttp would
+    private static final OkHttpClient client = new OkHttpClient();
+
+    private static Call poll(String host) {
+        return client.newCall(new Request.Builder().url("http://" + host + "/engine.io/").build());
+    }
+
+    private static Call write(String host) {
+        return client.newCall(new Request.Builder().url("http://" + host + "/engine.io/")
+                .post(RequestBody.create(null, "4a")).build());
+    }
+
+    @Test
+    public void pollOnNewConnection() throws InterruptedException {
+        HttpTimings timings = new HttpTimings();
+        Call call = poll("example.com");
+        InetSocketAddress address = InetSocketAddress.createUnresolved("example.com", 80);
+        EventListener listener = timings.create(call);
+
+        listener.callStart(call);
+        listener.dnsStart(call, "example.com");
+        listener.dnsEnd(call, "example.com", Collections.<InetAddress>emptyList());
+        listener.connectStart(call, address, Proxy.NO_PROXY);
+        listener.secureConnectStart(call);
+        listener.secureConnectEnd(call, null);
+        listener.connectEnd(call, address, Proxy.NO_PROXY, Protocol.HTTP_1_1);
+        listener.connectionAcquired(call, null);
+        listener.requestHeadersStart(call);
+        listener.requestHeadersEnd(call, call.request());
+        // the server holds the poll
+        Thread.sleep(5);
+        listener.responseHeadersStart(call);
+        listener.responseBodyEnd(call, 10);
+        listener.callEnd(call);
+
+        HttpTimings.Stats polls = timings.polls();
+        assertThat(polls.calls(), is(1L));
+        assertThat(polls.failures(), is(0L));
+        assertThat(polls.newConnections(), is(1L));
+        assertThat(polls.reusedConnections(), is(0L));
+        for (HttpTimings.Phase phase : HttpTimings.Phase.values()) {
+            assertThat(polls.phase(phase).count(), is(1L));
+        }
+        long wait = polls.phase(HttpTimings.Phase.WAIT).max(TimeUnit.NANOSECONDS);
+        assertThat(wait >= TimeUnit.MILLISECONDS.toNanos(5), is(true));
+        assertThat(polls.phase(HttpTimings.Phase.TOTAL).max(TimeUnit.NANOSECONDS) >= wait, is(true));
+        assertThat(timings.writes().calls(), is(0L));
+    }
+
+    @Test
+    public void writeOnReusedConnection() {
+        HttpTimings timings = new HttpTimings();
+        Call call = write("example.com");
+        EventListener listener = timings.create(call);
+
+        listener.callStart(call);
+        listener.connectionAcquired(call, null);
+        listener.requestHeadersStart(call);
+        listener.requestHeadersEnd(call, call.request());
+        listener.requestBodyEnd(call, 2);
+        listener.responseHeadersStart(call);
+        listener.responseBodyEnd(call, 2);
+        listener.callEnd(call);
+
+        HttpTimings.Stats writes = timings.writes();
+        assertThat(writes.calls(), is(1L));
+        assertThat(writes.newConnections(), is(0L));
+        assertThat(writes.reusedConnections(), is(1L));
+        assertThat(writes.phase(HttpTimings.Phase.DNS).count(), is(0L));
+        assertThat(writes.phase(HttpTimings.Phase.CONNECT).count(), is(0L));
+        assertThat(writes.phase(HttpTimings.Phase.TLS).count(), is(0L));
+        assertThat(writes.phase(HttpTimings.Phase.REQUEST).count(), is(1L));
+        assertThat(writes.phase(HttpTimings.Phase.WAIT).count(), is(1L));
+        assertThat(writes.phase(HttpTimings.Phase.TOTAL).count(), is(1L));
+        assertThat(timings.polls().calls(), is(0L));
+    }
+
+    @Test
+    public void failedCall() {
+        HttpTimings timings = new HttpTimings();
+        Call call = poll("example.com");
+        EventListener listener = timings.create(call);
+
+        listener.callStart(call);
+        listener.dnsStart(call, "example.com");
+        listener.callFailed(call, new IOException("unknown host"));
+
+        HttpTimings.Stats polls = timings.polls();
+        assertThat(polls.calls(), is(1L));
+        assertThat(polls.failures(), is(1L));
+        assertThat(polls.newConnections(), is(0L));
+        assertThat(polls.reusedConnections(), is(0L));
+        // a phase that did not end is left out
+        assertThat(polls.phase(HttpTimings.Phase.DNS).count(), is(0L));
+        assertThat(polls.phase(HttpTimings.Phase.TOTAL).count(), is(1L));
+    }
+
+    @Test
+    public void splitByHost() {
+        HttpTimings timings = new HttpTimings();
+        for (Call call : new Call[] {poll("a.example.com"), write("a.example.com"), poll("b.example.com")}) {
+            EventListener listener = timings.create(call);
+            listener.callStart(call);
+            listener.callEnd(call);
+        }
+
+        assertThat(timings.hosts(), hasItems("a.example.com", "b.example.com"));
+        assertThat(timings.hosts().size(), is(2));
+        assertThat(timings.host("a.example.com").calls(), is(2L));
+        assertThat(timings.host("b.example.com").calls(), is(1L));
+        assertThat(timings.host("c.example.com"), is(nullValue()));
+        assertThat(timings.polls().calls(), is(2L));
+        assertThat(timings.writes().calls(), is(1L));
+    }
+}
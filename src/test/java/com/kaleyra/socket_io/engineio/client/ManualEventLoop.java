@@ -0,0 +1,50 @@
+package com.kaleyra.socket_io.engineio.client;
+
+import com.kaleyra.socket_io.thread.EventLoop;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An event loop run by the test thread: tasks queued from it run inline, the others wait
+ * until the test runs them.
+ */
+class ManualEventLoop implements EventLoop {
+
+    private final Thread thread = Thread.currentThread();
+    private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<Runnable>();
+
+    @Override
+    public boolean isCurrent() {
+        return Thread.currentThread() == this.thread;
+    }
+
+    @Override
+    public void exec(Runnable task) {
+        if (this.isCurrent()) {
+            task.run();
+        } else {
+            this.tasks.offer(task);
+        }
+    }
+
+    @Override
+    public void nextTick(Runnable task) {
+        this.tasks.offer(task);
+    }
+
+    void runPending() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    boolean runNext(long timeout, TimeUnit unit) throws InterruptedException {
+        Runnable task = this.tasks.poll(timeout, unit);
+        if (task == null) return false;
+        task.run();
+        return true;
+    }
+}
@@ -0,0 +1,52 @@
+package com.kaleyra.socket_io.engineio.client;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class OkHttpClientProviderTest {
+
+    @Test
+    public void buildClientOnce() {
+        OkHttpClientProvider.Options opts = new OkHttpClientProvider.Options();
+        opts.maxRequests = 100;
+        opts.maxRequestsPerHost = 50;
+        OkHttpClientProvider provider = new OkHttpClientProvider(opts);
+
+        OkHttpClient client = provider.client();
+
+        assertThat(provider.client(), is(sameInstance(client)));
+        assertThat(client.dispatcher().getMaxRequests(), is(100));
+        assertThat(client.dispatcher().getMaxRequestsPerHost(), is(50));
+        assertThat(client.readTimeoutMillis(), is(60000));
+    }
+
+    @Test
+    public void http2PriorKnowledge() {
+        OkHttpClientProvider.Options opts = new OkHttpClientProvider.Options();
+        opts.http2PriorKnowledge = true;
+
+        OkHttpClient client = new OkHttpClientProvider(opts).client();
+
+        assertThat(client.protocols(), is(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE)));
+    }
+
+    @Test
+    public void socketsShareDefaultClient() {
+        Socket first = new Socket(new Socket.Options());
+        Socket second = new Socket(new Socket.Options());
+        Transport transport = first.createTransport("polling");
+
+        assertThat(transport.callFactory, is((Object) OkHttpClientProvider.getDefault().client()));
+        assertThat(second.createTransport("polling").callFactory, is(sameInstance(transport.callFactory)));
+    }
+}
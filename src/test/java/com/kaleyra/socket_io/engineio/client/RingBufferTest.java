@@ -0,0 +1,81 @@
+package com.kaleyra.socket_io.engineio.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class RingBufferTest {
+
+    @Test
+    public void offerAndRelease() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>();
+        for (int i = 0; i < 10; i++) {
+            buffer.offer(i);
+        }
+        buffer.release(8);
+        // wraps around the end of the array
+        for (int i = 10; i < 20; i++) {
+            buffer.offer(i);
+        }
+
+        assertThat(buffer.size(), is(12));
+        assertThat(buffer.segment(3), is(Arrays.asList(8, 9, 10)));
+        buffer.release(12);
+        assertThat(buffer.isEmpty(), is(true));
+    }
+
+    @Test
+    public void segmentIsStable() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>();
+        for (int i = 0; i < 12; i++) {
+            buffer.offer(i);
+        }
+        buffer.release(10);
+        List<Integer> segment = buffer.segment(2);
+
+        // grows the array while the segment is in use
+        for (int i = 12; i < 100; i++) {
+            buffer.offer(i);
+        }
+        assertThat(segment, is(Arrays.asList(10, 11)));
+        assertThat(buffer.segment(buffer.size()).get(89), is(99));
+
+        buffer.clear();
+        assertThat(segment, is(Arrays.asList(10, 11)));
+        assertThat(buffer.size(), is(0));
+    }
+
+    @Test
+    public void segmentAtOffset() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>();
+        for (int i = 0; i < 20; i++) {
+            buffer.offer(i);
+        }
+        buffer.release(14);
+        for (int i = 20; i < 30; i++) {
+            buffer.offer(i);
+        }
+
+        List<Integer> first = buffer.segment(0, 4);
+        List<Integer> second = buffer.segment(4, 6);
+        buffer.release(4);
+
+        assertThat(second, is(Arrays.asList(18, 19, 20, 21, 22, 23)));
+        assertThat(buffer.segment(0, 2), is(Arrays.asList(18, 19)));
+        assertThat(first.size(), is(4));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void segmentIsReadOnly() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>();
+        buffer.offer(1);
+        buffer.segment(1).set(0, 2);
+    }
+}
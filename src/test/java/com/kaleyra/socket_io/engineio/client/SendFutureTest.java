@@ -0,0 +1,75 @@
+package com.kaleyra.socket_io.engineio.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class SendFutureTest {
+
+    @Test
+    public void complete() throws Exception {
+        SendFuture future = new SendFuture();
+        final List<SendFuture> completed = new ArrayList<SendFuture>();
+        future.addCallback(new SendFuture.Callback() {
+            @Override
+            public void onComplete(SendFuture future) {
+                completed.add(future);
+            }
+        });
+        assertThat(future.isDone(), is(false));
+        assertThat(completed.size(), is(0));
+
+        assertThat(future.complete(null), is(true));
+        assertThat(future.complete(new EngineIOException("late")), is(false));
+        assertThat(future.isDone(), is(true));
+        assertThat(future.isSuccess(), is(true));
+        assertThat(future.get(), is(nullValue()));
+        assertThat(completed.size(), is(1));
+    }
+
+    @Test
+    public void fail() throws InterruptedException {
+        SendFuture future = new SendFuture();
+        EngineIOException cause = new EngineIOException("socket closed");
+        future.complete(cause);
+
+        assertThat(future.isSuccess(), is(false));
+        assertThat(future.cause(), is((Exception) cause));
+        try {
+            future.get();
+            org.junit.Assert.fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is((Throwable) cause));
+        }
+    }
+
+    @Test
+    public void callbackAfterDone() {
+        SendFuture future = new SendFuture();
+        future.complete(null);
+        final boolean[] called = new boolean[] {false};
+        future.addCallback(new SendFuture.Callback() {
+            @Override
+            public void onComplete(SendFuture future) {
+                called[0] = true;
+            }
+        });
+        assertThat(called[0], is(true));
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void getTimesOut() throws Exception {
+        new SendFuture().get(10, TimeUnit.MILLISECONDS);
+    }
+}
@@ -1,15 +1,25 @@
 package com.kaleyra.socket_io.engineio.client;
 
+import com.kaleyra.socket_io.buffer.BufferPool;
+import com.kaleyra.socket_io.buffer.PooledBuffer;
+import com.kaleyra.socket_io.emitter.Emitter;
 import com.kaleyra.socket_io.engineio.client.transports.Polling;
 import com.kaleyra.socket_io.engineio.client.transports.WebSocket;
+import com.kaleyra.socket_io.engineio.parser.Packet;
+import com.kaleyra.socket_io.engineio.parser.PacketType;
+import com.kaleyra.socket_io.thread.EventLoop;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import okio.ByteString;
 
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -118,4 +128,388 @@ public class SocketTest {
         assertThat(client.hostname, is("::1"));
         assertThat(client.port, is(80));
     }
+
+    @Test
+    public void trySendOverHighWaterMark() {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Socket.Options opts = new Socket.Options();
+        opts.writeBufferHighWaterMark = 10;
+        opts.writeBufferHighWaterPackets = 3;
+        // a loop that never runs the tasks, so nothing leaves the buffer
+        opts.eventLoop = new EventLoop() {
+            @Override
+            public boolean isCurrent() {
+                return false;
+            }
+
+            @Override
+            public void exec(Runnable task) {
+                tasks.add(task);
+            }
+
+            @Override
+            public void nextTick(Runnable task) {
+                tasks.add(task);
+            }
+        };
+        Socket socket = new Socket(opts);
+
+        assertThat(socket.writable(), is(true));
+        assertThat(socket.trySend("12345"), is(true));
+        assertThat(socket.trySend(new byte[4]), is(true));
+        assertThat(socket.bufferedAmount(), is(9L));
+        assertThat(socket.writable(), is(true));
+        assertThat(socket.trySend("1"), is(true));
+        assertThat(socket.writable(), is(false));
+        assertThat(socket.trySend("1"), is(false));
+        assertThat(socket.trySend(new byte[1]), is(false));
+        assertThat(socket.bufferedAmount(), is(10L));
+    }
+
+    @Test
+    public void binaryListenersDoNotHideMessage() {
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = new ManualEventLoop();
+        FakeTransport transport = FakeTransport.connect(opts);
+        final List<Object> events = new ArrayList<Object>();
+        transport.socket().on(Socket.EVENT_BINARY, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                events.add(args[0]);
+            }
+        }).on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                events.add(args[0]);
+            }
+        });
+
+        transport.receive(new Packet<ByteString>(PacketType.MESSAGE, ByteString.of((byte) 1, (byte) 2)));
+
+        assertThat(events.size(), is(2));
+        assertThat(events.get(0), instanceOf(ByteBuffer.class));
+        assertThat(((ByteBuffer) events.get(0)).remaining(), is(2));
+        assertThat(events.get(1), instanceOf(byte[].class));
+        assertThat((byte[]) events.get(1), is(new byte[] {1, 2}));
+    }
+
+    @Test
+    public void sendPooledBufferAsPlainBuffer() {
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = new ManualEventLoop();
+        FakeTransport transport = FakeTransport.connect(opts);
+        BufferPool pool = new BufferPool(16, 1);
+        PooledBuffer first = pool.acquire();
+        first.buffer().put(new byte[] {1, 2, 3}).flip();
+        PooledBuffer second = pool.acquire();
+        second.buffer().put(new byte[] {4}).flip();
+
+        transport.socket().send(first);
+        // released by its owner while the socket still holds it
+        first.release();
+        transport.drain();
+        assertThat(transport.lastWrite().get(0).data, instanceOf(ByteBuffer.class));
+        assertThat(((ByteBuffer) transport.lastWrite().get(0).data).remaining(), is(3));
+
+        // the buffers of the socket are still in step
+        transport.socket().send(second);
+        assertThat(transport.writes.size(), is(2));
+        assertThat(transport.lastWrite().size(), is(1));
+        transport.drain();
+        transport.socket().send("a");
+        assertThat(transport.writes.size(), is(3));
+        assertThat(transport.lastWrite().get(0).data, is((Object) "a"));
+    }
+
+    @Test
+    public void batchUntilWindowEnds() throws InterruptedException {
+        ManualEventLoop loop = new ManualEventLoop();
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = loop;
+        opts.batchWindow = TimeUnit.MILLISECONDS.toMicros(10);
+        FakeTransport transport = FakeTransport.connect(opts);
+
+        transport.socket().send("a");
+        transport.socket().send("b");
+        assertThat(transport.writes.size(), is(0));
+
+        assertThat(loop.runNext(5, TimeUnit.SECONDS), is(true));
+        assertThat(transport.writes.size(), is(1));
+        assertThat(transport.lastWrite().size(), is(2));
+    }
+
+    @Test
+    public void batchUntilMaxBytes() {
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = new ManualEventLoop();
+        opts.batchWindow = TimeUnit.SECONDS.toMicros(60);
+        opts.batchMaxBytes = 3;
+        FakeTransport transport = FakeTransport.connect(opts);
+
+        transport.socket().send("ab");
+        assertThat(transport.writes.size(), is(0));
+        transport.socket().send("cd");
+        assertThat(transport.writes.size(), is(1));
+        assertThat(transport.lastWrite().size(), is(2));
+
+        // over the limit while the transport is busy: written once it drains, not at
+        // the end of the window the first write already closed
+        transport.socket().send("efgh");
+        assertThat(transport.writes.size(), is(1));
+        transport.drain();
+        assertThat(transport.writes.size(), is(2));
+        assertThat(transport.lastWrite().get(0).data, is((Object) "efgh"));
+    }
+
+    @Test
+    public void batchOnlyMessages() {
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = new ManualEventLoop();
+        opts.batchWindow = TimeUnit.SECONDS.toMicros(60);
+        FakeTransport transport = FakeTransport.connect(opts);
+
+        transport.receive(new Packet(PacketType.PING));
+        assertThat(transport.writes.size(), is(1));
+        assertThat(transport.lastWrite().get(0).packetType(), is(PacketType.PONG));
+    }
+
+    @Test
+    public void addAndRemoveTypedListeners() {
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = new ManualEventLoop();
+        FakeTransport transport = FakeTransport.connect(opts);
+        final List<String> received = new ArrayList<String>();
+        Socket.MessageListener first = new Socket.MessageListener() {
+            @Override
+            public void onMessage(String message) {
+                received.add("first " + message);
+            }
+        };
+        Socket.MessageListener second = new Socket.MessageListener() {
+            @Override
+            public void onMessage(String message) {
+                received.add("second " + message);
+            }
+        };
+        transport.socket().addMessageListener(first).addMessageListener(second);
+
+        transport.receive(new Packet<String>(PacketType.MESSAGE, "a"));
+        transport.socket().removeMessageListener(first);
+        transport.receive(new Packet<String>(PacketType.MESSAGE, "b"));
+        transport.socket().removeMessageListener(second);
+        // removing a listener twice does nothing
+        transport.socket().removeMessageListener(second);
+        transport.receive(new Packet<String>(PacketType.MESSAGE, "c"));
+
+        assertThat(received.toString(), is("[first a, second a, second b]"));
+    }
+
+    @Test
+    public void typedListenersBeforeEvents() {
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = new ManualEventLoop();
+        FakeTransport transport = FakeTransport.connect(opts);
+        final List<String> received = new ArrayList<String>();
+        transport.socket().on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                received.add("event");
+            }
+        });
+        transport.socket().addMessageListener(new Socket.MessageListener() {
+            @Override
+            public void onMessage(String message) {
+                received.add("message");
+            }
+        }).addBinaryListener(new Socket.BinaryListener() {
+            @Override
+            public void onBinary(ByteBuffer message) {
+                received.add("binary");
+            }
+        }).addPacketListener(new Socket.PacketListener() {
+            @Override
+            public void onPacket(Packet packet) {
+                received.add("packet");
+            }
+        });
+
+        transport.receive(new Packet<String>(PacketType.MESSAGE, "a"));
+        transport.receive(new Packet<ByteString>(PacketType.MESSAGE, ByteString.of((byte) 1)));
+
+        assertThat(received.toString(), is("[packet, message, event, packet, binary, event]"));
+    }
+
+    @Test
+    public void closeListenerArguments() {
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = new ManualEventLoop();
+        FakeTransport transport = FakeTransport.connect(opts);
+        final List<Object> received = new ArrayList<Object>();
+        transport.socket().on(Socket.EVENT_CLOSE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                received.add("event");
+            }
+        });
+        transport.socket().addCloseListener(new Socket.CloseListener() {
+            @Override
+            public void onClose(String reason, Exception desc) {
+                received.add(reason);
+                received.add(desc);
+            }
+        });
+        EngineIOException error = new EngineIOException("boom");
+
+        transport.emit(Transport.EVENT_ERROR, error);
+
+        assertThat(received.size(), is(3));
+        assertThat(received.get(0), is((Object) "event"));
+        assertThat(received.get(1), is((Object) "transport error"));
+        assertThat(received.get(2), is((Object) error));
+    }
+
+    @Test
+    public void writeBufferDepthOfSharedMetrics() {
+        CountingSocketMetrics metrics = new CountingSocketMetrics();
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = new ManualEventLoop();
+        opts.metrics = metrics;
+        FakeTransport first = FakeTransport.connect(opts);
+        FakeTransport second = FakeTransport.connect(opts);
+
+        first.socket().send("a");
+        first.socket().send("b");
+        second.socket().send("c");
+        assertThat(metrics.writeBufferDepth(), is(3));
+
+        first.drain();
+        assertThat(metrics.writeBufferDepth(), is(2));
+        // the packets left are dropped
+        first.emit(Transport.EVENT_ERROR, new EngineIOException("boom"));
+        assertThat(metrics.writeBufferDepth(), is(1));
+        second.drain();
+        assertThat(metrics.writeBufferDepth(), is(0));
+        assertThat(metrics.maxWriteBufferDepth(), is(3));
+    }
+
+    @Test
+    public void traceEverySampledMessage() {
+        final List<Object> traced = new ArrayList<Object>();
+        final List<long[]> timelines = new ArrayList<long[]>();
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = new ManualEventLoop();
+        opts.traceSampleInterval = 3;
+        opts.tracer = new PacketTracer() {
+            @Override
+            public void onPacketSent(Packet packet, long sent, long enqueued, long flushed, long written, long drained) {
+                traced.add(packet.data);
+                timelines.add(new long[] {sent, enqueued, flushed, written, drained});
+            }
+
+            @Override
+            public void onPacketReceived(Packet packet, long received, long handled, long dispatched) {}
+        };
+        FakeTransport transport = FakeTransport.connect(opts);
+
+        for (int i = 0; i < 9; i++) {
+            transport.socket().send("m" + i);
+            if (i % 3 == 1) {
+                // a pong, never traced, in the middle of the write buffer
+                transport.receive(new Packet(PacketType.PING));
+            }
+            if (i % 2 == 1) {
+                transport.drain();
+            }
+        }
+        transport.drain();
+        transport.drain();
+
+        assertThat(traced.toString(), is("[m2, m5, m8]"));
+        for (long[] timeline : timelines) {
+            for (int i = 1; i < timeline.length; i++) {
+                assertThat(timeline[i] >= timeline[i - 1], is(true));
+            }
+        }
+
+        // dropped on close, so never reported
+        transport.socket().send("m9");
+        transport.socket().send("m10");
+        transport.socket().send("m11");
+        transport.emit(Transport.EVENT_ERROR, new EngineIOException("boom"));
+        transport.drain();
+        assertThat(traced.size(), is(3));
+    }
+
+    @Test
+    public void traceReceivedTimeOfItsPacketOnly() {
+        final List<long[]> timelines = new ArrayList<long[]>();
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = new ManualEventLoop();
+        opts.tracer = new PacketTracer() {
+            @Override
+            public void onPacketSent(Packet packet, long sent, long enqueued, long flushed, long written, long drained) {}
+
+            @Override
+            public void onPacketReceived(Packet packet, long received, long handled, long dispatched) {
+                timelines.add(new long[] {received, handled, dispatched});
+            }
+        };
+        FakeTransport transport = FakeTransport.connect(opts);
+        timelines.clear();
+
+        transport.receivedNanos = 1;
+        transport.receive(new Packet<String>(PacketType.MESSAGE, "a"));
+        transport.receive(new Packet<String>(PacketType.MESSAGE, "b"));
+
+        assertThat(timelines.size(), is(2));
+        assertThat(timelines.get(0)[0], is(1L));
+        // not stamped by the transport, so taken when handled
+        assertThat(timelines.get(1)[0], is(timelines.get(1)[1]));
+    }
+
+    @Test
+    public void packetsPushBackPingTimeout() throws InterruptedException {
+        ManualEventLoop loop = new ManualEventLoop();
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = loop;
+        FakeTransport transport = FakeTransport.connect(opts,
+                "{\"sid\":\"abc\",\"upgrades\":[],\"pingInterval\":100,\"pingTimeout\":100}");
+        final List<Object> closed = new ArrayList<Object>();
+        transport.socket().on(Socket.EVENT_CLOSE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                closed.add(args[0]);
+            }
+        });
+        // the socket itself does not listen to heartbeats
+        assertThat(transport.socket().hasListeners(Socket.EVENT_HEARTBEAT), is(false));
+
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(600);
+        while (System.nanoTime() - end < 0) {
+            transport.receive(new Packet<String>(PacketType.MESSAGE, "a"));
+            loop.runNext(50, TimeUnit.MILLISECONDS);
+        }
+        assertThat(closed.size(), is(0));
+
+        while (closed.isEmpty() && loop.runNext(2, TimeUnit.SECONDS)) {
+            loop.runPending();
+        }
+        assertThat(closed.toString(), is("[ping timeout]"));
+    }
+
+    @Test
+    public void countTextInUtf8Bytes() {
+        CountingSocketMetrics metrics = new CountingSocketMetrics();
+        Socket.Options opts = new Socket.Options();
+        opts.eventLoop = new ManualEventLoop();
+        opts.metrics = metrics;
+        FakeTransport transport = FakeTransport.connect(opts);
+
+        transport.socket().send("€a");
+        transport.receive(new Packet<String>(PacketType.MESSAGE, "é"));
+        transport.receive(new Packet<ByteString>(PacketType.MESSAGE, ByteString.of((byte) 1, (byte) 2)));
+
+        assertThat(metrics.bytesSent(PacketType.MESSAGE), is(4L));
+        assertThat(metrics.bytesReceived(PacketType.MESSAGE), is(4L));
+    }
 }
@@ -0,0 +1,97 @@
+package com.kaleyra.socket_io.engineio.parser;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class Base64Test {
+
+    private static final int[] FLAGS = {
+        Base64.DEFAULT, Base64.NO_PADDING, Base64.NO_WRAP, Base64.CRLF, Base64.URL_SAFE | Base64.NO_WRAP
+    };
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    @Test
+    public void encodeToAppendable() throws IOException {
+        for (int flags : FLAGS) {
+            for (int length : new int[] {0, 1, 2, 3, 56, 57, 58, 1000}) {
+                byte[] data = data(length);
+                StringBuilder builder = new StringBuilder("x");
+                Base64.encode(data, 0, length, flags, builder);
+                assertThat(builder.toString(), is("x" + Base64.encodeToString(data, flags)));
+                assertThat(builder.length() - 1, is(Base64.encodedLength(length, flags)));
+            }
+        }
+    }
+
+    @Test
+    public void encodeSlice() throws IOException {
+        byte[] data = data(100);
+        StringBuilder builder = new StringBuilder();
+        Base64.encode(data, 10, 50, Base64.DEFAULT, builder);
+        assertThat(builder.toString(), is(Base64.encodeToString(data, 10, 50, Base64.DEFAULT)));
+    }
+
+    @Test
+    public void encodeDirectByteBufferToCharBuffer() throws IOException {
+        byte[] data = data(200);
+        ByteBuffer input = ByteBuffer.allocateDirect(data.length);
+        input.put(data);
+        input.flip();
+        input.position(5);
+        CharBuffer output = CharBuffer.allocate(Base64.encodedLength(195, Base64.DEFAULT));
+
+        Base64.encode(input, Base64.DEFAULT, output);
+
+        assertThat(input.remaining(), is(0));
+        assertThat(output.remaining(), is(0));
+        output.flip();
+        assertThat(output.toString(), is(Base64.encodeToString(data, 5, 195, Base64.DEFAULT)));
+    }
+
+    @Test
+    public void decodeRange() {
+        for (int flags : FLAGS) {
+            for (int length : new int[] {0, 1, 2, 3, 56, 57, 58, 1000}) {
+                byte[] data = data(length);
+                String encoded = "b" + Base64.encodeToString(data, flags) + "\u001e";
+                assertThat(Base64.decode(encoded, 1, encoded.length() - 1, flags), is(data));
+            }
+        }
+    }
+
+    @Test
+    public void decodeIntoBuffer() {
+        byte[] data = data(10);
+        String encoded = Base64.encodeToString(data, Base64.DEFAULT);
+        byte[] output = new byte[20];
+
+        int length = Base64.decode(encoded, 0, encoded.length(), Base64.DEFAULT, output, 4);
+
+        assertThat(length, is(10));
+        assertThat(Base64.decodedLength(encoded, 0, encoded.length(), Base64.DEFAULT), is(10));
+        for (int i = 0; i < length; i++) {
+            assertThat(output[4 + i], is(data[i]));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeBadPadding() {
+        Base64.decode("AAA==", 0, 5, Base64.DEFAULT);
+    }
+}
@@ -1,9 +1,17 @@
 package com.kaleyra.socket_io.engineio.parser;
 
+import okio.Buffer;
+import okio.ByteString;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 
@@ -298,6 +306,225 @@ public class ParserTest {
         });
     }
 
+    @Test
+    public void decodePacketRange() {
+        Packet<String> p = Parser.decodePacket("xx4hello\u001e", 2, 8);
+        assertThat(p.type, is(Packet.MESSAGE));
+        assertThat(p.data, is("hello"));
+
+        p = Parser.decodePacket("xx2", 2, 3);
+        assertThat(p.type, is(Packet.PING));
+        assertThat(p.data, is(nullValue()));
+
+        p = Parser.decodePacket("xx4", 2, 2);
+        assertThat(p.type, is(Packet.ERROR));
+        assertThat(p.data, is(ERROR_DATA));
+    }
+
+    @Test
+    public void decodePayloadIgnoresTrailingSeparator() {
+        final List<Object> packets = new ArrayList<Object>();
+        Parser.decodePayload("4a\u001e2\u001e", new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                assertThat(total, is(2));
+                packets.add(packet.type);
+                packets.add(packet.data);
+                return true;
+            }
+        });
+        assertThat(packets.toArray(), is(new Object[] {Packet.MESSAGE, "a", Packet.PING, null}));
+    }
+
+    @Test
+    public void decodePayloadRange() {
+        final List<Object> packets = new ArrayList<Object>();
+        String data = "4a\u001e4b\u001e4c";
+        Parser.decodePayload(data, 3, data.length(), new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                assertThat(total, is(2));
+                packets.add(index);
+                packets.add(packet.data);
+                return true;
+            }
+        });
+        assertThat(packets.toArray(), is(new Object[] {0, "b", 1, "c"}));
+    }
+
+    @Test
+    public void decodePayloadStopsOnBadPacket() {
+        final List<Object> packets = new ArrayList<Object>();
+        Parser.decodePayload("4a\u001e\u001e4b", new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                packets.add(packet.type);
+                return true;
+            }
+        });
+        assertThat(packets.toArray(), is(new Object[] {Packet.MESSAGE, Packet.ERROR}));
+    }
+
+    @Test
+    public void decodePacketType() {
+        Packet<String> p = Parser.decodePacket("3probe");
+        assertThat(p.packetType(), is(PacketType.PONG));
+        assertThat(p.type, is(Packet.PONG));
+
+        p = Parser.decodePacket("7");
+        assertThat(p.packetType(), is(PacketType.ERROR));
+    }
+
+    @Test
+    public void encodePacketTypeFromString() {
+        String ping = new String("ping");
+        Packet<String> packet = new Packet<String>(ping, "1");
+        assertThat(packet.packetType(), is(PacketType.PING));
+        // reading the type leaves the field as it was set
+        assertThat(packet.type == ping, is(true));
+        packet.type = Packet.CLOSE;
+        assertThat(packet.packetType(), is(PacketType.CLOSE));
+        Parser.encodePacket(packet, new Parser.EncodeCallback<String>() {
+            @Override
+            public void call(String data) {
+                assertThat(data, is("11"));
+            }
+        });
+    }
+
+    @Test
+    public void decodePayloadFromSource() throws IOException {
+        final List<Object> packets = new ArrayList<Object>();
+        Buffer source = new Buffer().writeUtf8("4€€€\u001ebAQID\u001e2\u001e4ignored");
+        Parser.decodePayload(source, new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                assertThat(total, is(-1));
+                packets.add(index);
+                packets.add(packet.data);
+                return packet.packetType() != PacketType.PING;
+            }
+        });
+        assertThat(packets.size(), is(6));
+        assertThat(packets.get(1), is((Object) "€€€"));
+        assertThat((byte[]) packets.get(3), is(new byte[] {1, 2, 3}));
+        assertThat(packets.get(4), is((Object) 2));
+        assertThat(source.readUtf8(), is("4ignored"));
+    }
+
+    @Test
+    public void decodePayloadFromSourceAsFromString() throws IOException {
+        String[] payloads = {
+            "4a\u001e", "4a\u001e\u001e", "4a\u001ebAQID\u001e", "\u001e", "\u001e\u001e",
+            "4a\u001e\u001e4b", "\u001e4a"
+        };
+        for (String payload : payloads) {
+            final List<String> fromString = new ArrayList<String>();
+            Parser.decodePayload(payload, new Parser.DecodePayloadCallback<String>() {
+                @Override
+                public boolean call(Packet<String> packet, int index, int total) {
+                    fromString.add(describe(packet));
+                    return true;
+                }
+            });
+            final List<String> fromSource = new ArrayList<String>();
+            Parser.decodePayload(new Buffer().writeUtf8(payload), new Parser.DecodePayloadCallback<String>() {
+                @Override
+                public boolean call(Packet<String> packet, int index, int total) {
+                    fromSource.add(describe(packet));
+                    return true;
+                }
+            });
+            assertThat(payload, fromSource, is(fromString));
+        }
+    }
+
+    private static String describe(Packet packet) {
+        Object data = packet.data instanceof byte[] ? Arrays.toString((byte[]) packet.data) : packet.data;
+        return packet.type + ":" + data;
+    }
+
+    @Test
+    public void decodeEmptyPayloadFromSource() throws IOException {
+        Parser.decodePayload(new Buffer(), new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                assertThat(packet.type, is(Packet.ERROR));
+                assertThat(packet.data, is(ERROR_DATA));
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void encodePayloadToSink() throws IOException {
+        byte[] large = new byte[10000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        Packet[][] payloads = new Packet[][] {
+            {},
+            {new Packet<String>(Packet.MESSAGE, "€€€"), new Packet(Packet.PING), new Packet<byte[]>(Packet.MESSAGE, new byte[0])},
+            {new Packet<byte[]>(Packet.MESSAGE, large), new Packet<Integer>(Packet.MESSAGE, 1), new Packet<byte[]>(Packet.MESSAGE, new byte[] {1, 2})},
+        };
+
+        for (Packet[] packets : payloads) {
+            final String[] expected = new String[1];
+            Parser.encodePayload(packets, new Parser.EncodeCallback<String>() {
+                @Override
+                public void call(String data) {
+                    expected[0] = data;
+                }
+            });
+
+            Buffer sink = new Buffer();
+            Parser.encodePayload(packets, sink);
+            assertThat(Parser.payloadLength(packets), is(sink.size()));
+            assertThat(sink.readUtf8(), is(expected[0]));
+        }
+    }
+
+    @Test
+    public void encodeBinaryTypesAlike() throws IOException {
+        byte[] data = new byte[5000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 10);
+        direct.position(10);
+        direct.put(data);
+        direct.position(10);
+        ByteBuffer heap = ByteBuffer.wrap(new byte[data.length + 3], 3, data.length).slice();
+        heap.put(data);
+        heap.flip();
+
+        Packet[] expected = {new Packet<byte[]>(Packet.MESSAGE, data), new Packet<String>(Packet.MESSAGE, "a")};
+        final String[] encoded = new String[1];
+        Parser.encodePayload(expected, new Parser.EncodeCallback<String>() {
+            @Override
+            public void call(String data) {
+                encoded[0] = data;
+            }
+        });
+
+        for (Object binary : new Object[] {direct, heap, ByteString.of(data)}) {
+            Packet[] packets = {new Packet<Object>(Packet.MESSAGE, binary), new Packet<String>(Packet.MESSAGE, "a")};
+            Parser.encodePayload(packets, new Parser.EncodeCallback<String>() {
+                @Override
+                public void call(String data) {
+                    assertThat(data, is(encoded[0]));
+                }
+            });
+            Buffer sink = new Buffer();
+            Parser.encodePayload(packets, sink);
+            assertThat(Parser.payloadLength(packets), is(sink.size()));
+            assertThat(sink.readUtf8(), is(encoded[0]));
+        }
+        // the data of the packets is not consumed
+        assertThat(direct.position(), is(10));
+        assertThat(heap.remaining(), is(data.length));
+    }
+
     @Test
     public void encodeBinaryMessage()  {
         final byte[] data = new byte[5];
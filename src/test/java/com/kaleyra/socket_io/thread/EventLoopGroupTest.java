@@ -0,0 +1,106 @@
+package com.kaleyra.socket_io.thread;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class EventLoopGroupTest {
+
+    private EventLoopGroup group;
+
+    @Before
+    public void setUp() {
+        group = new EventLoopGroup(2);
+    }
+
+    @After
+    public void tearDown() {
+        group.shutdown();
+    }
+
+    @Test
+    public void isCurrent() throws InterruptedException {
+        final BlockingQueue<Boolean> queue = new LinkedBlockingQueue<Boolean>();
+        final EventLoop loop = group.next();
+        final EventLoop other = group.next();
+
+        queue.offer(loop.isCurrent());
+
+        loop.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(loop.isCurrent());
+                queue.offer(other.isCurrent());
+            }
+        });
+
+        assertThat(queue.take(), is(false));
+        assertThat(queue.take(), is(true));
+        assertThat(queue.take(), is(false));
+    }
+
+    @Test
+    public void exec() throws InterruptedException {
+        final BlockingQueue<Integer> queue = new LinkedBlockingQueue<Integer>();
+        final EventLoop loop = group.next();
+
+        loop.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(0);
+                loop.exec(new Runnable() {
+                    @Override
+                    public void run() {
+                        queue.offer(1);
+                    }
+                });
+                loop.nextTick(new Runnable() {
+                    @Override
+                    public void run() {
+                        queue.offer(3);
+                    }
+                });
+                queue.offer(2);
+            }
+        });
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(queue.take(), is(i));
+        }
+    }
+
+    @Test
+    public void next() throws InterruptedException {
+        EventLoop first = group.next();
+        EventLoop second = group.next();
+
+        assertThat(group.next(), is(sameInstance(first)));
+        assertThat(second, is(not(sameInstance(first))));
+
+        Thread firstThread = threadOf(first);
+        assertThat(threadOf(second), is(not(firstThread)));
+        assertThat(threadOf(first), is(firstThread));
+    }
+
+    private static Thread threadOf(EventLoop loop) throws InterruptedException {
+        final BlockingQueue<Thread> queue = new LinkedBlockingQueue<Thread>();
+        loop.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(Thread.currentThread());
+            }
+        });
+        return queue.take();
+    }
+}
@@ -0,0 +1,101 @@
+package com.kaleyra.socket_io.thread;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class EventLoopMonitorTest {
+
+    @After
+    public void tearDown() {
+        EventThread.setMonitor(null);
+    }
+
+    @Test
+    public void attributeRunTimeToOwner() throws InterruptedException {
+        EventLoopMonitor monitor = new EventLoopMonitor();
+        EventThread.setMonitor(monitor);
+
+        Object owner = new Object();
+        final CountDownLatch done = new CountDownLatch(1);
+        EventLoop loop = EventThread.loop(owner);
+        loop.exec(new Runnable() {
+            @Override
+            public void run() {
+                sleep(20);
+            }
+        });
+        loop.exec(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        done.await();
+        // the second task is recorded once it returned
+        sleep(50);
+
+        EventLoopMonitor.Stats stats = monitor.snapshot();
+        assertThat(stats.tasks, is(2L));
+        assertThat(stats.queueDepth, is(0));
+        assertThat(stats.maxRunTime >= TimeUnit.MILLISECONDS.toNanos(20), is(true));
+        assertThat(stats.runTimeByOwner.get(owner) >= TimeUnit.MILLISECONDS.toNanos(20), is(true));
+    }
+
+    @Test
+    public void reportSlowTasks() throws InterruptedException {
+        final BlockingQueue<EventLoopMonitor.SlowTask> slowTasks = new LinkedBlockingQueue<EventLoopMonitor.SlowTask>();
+        EventLoopMonitor.Options opts = new EventLoopMonitor.Options();
+        opts.slowTaskThreshold = 20;
+        opts.captureStackTraces = true;
+        opts.listener = new EventLoopMonitor.Listener() {
+            @Override
+            public void onSlowTask(EventLoopMonitor.SlowTask task) {
+                slowTasks.offer(task);
+            }
+        };
+        EventLoopMonitor monitor = new EventLoopMonitor(opts);
+        EventThread.setMonitor(monitor);
+
+        Object owner = new Object();
+        EventThread.loop(owner).exec(new Runnable() {
+            @Override
+            public void run() {
+                // fast
+            }
+        });
+        EventThread.loop(owner).exec(new Runnable() {
+            @Override
+            public void run() {
+                sleep(100);
+            }
+        });
+
+        EventLoopMonitor.SlowTask task = slowTasks.poll(5, TimeUnit.SECONDS);
+        assertThat(task, is(notNullValue()));
+        assertThat(task.owner, is(owner));
+        assertThat(task.runTime >= TimeUnit.MILLISECONDS.toNanos(100), is(true));
+        assertThat(task.stackTrace, is(notNullValue()));
+        assertThat(slowTasks.poll(100, TimeUnit.MILLISECONDS), is((EventLoopMonitor.SlowTask) null));
+        assertThat(monitor.snapshot().slowTasks, is(1L));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -8,8 +8,10 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertThat;
 
 @RunWith(JUnit4.class)
@@ -89,4 +91,50 @@ public class EventThreadTest {
         }
         assertThat(threads.size(), is(1));
     }
+
+    @Test
+    public void continueAfterTaskException() throws InterruptedException {
+        final BlockingQueue<Thread> queue = new LinkedBlockingQueue<Thread>();
+
+        EventThread.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(Thread.currentThread());
+                throw new RuntimeException("expected");
+            }
+        });
+        EventThread.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(Thread.currentThread());
+            }
+        });
+
+        assertThat(queue.take(), is(queue.take()));
+    }
+
+    @Test
+    public void restartAfterIdleTimeout() throws InterruptedException {
+        final BlockingQueue<Thread> queue = new LinkedBlockingQueue<Thread>();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(Thread.currentThread());
+            }
+        };
+
+        EventThread.setIdleTimeout(0, TimeUnit.MILLISECONDS);
+        try {
+            EventThread.exec(task);
+            Thread first = queue.take();
+            first.join();
+
+            EventThread.exec(task);
+            Thread second = queue.take();
+            assertThat(second, is(not(first)));
+            assertThat(second.getName(), is("EventThread"));
+        } finally {
+            EventThread.setIdleTimeout(1, TimeUnit.SECONDS);
+        }
+    }
 }
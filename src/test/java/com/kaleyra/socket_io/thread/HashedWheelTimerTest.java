@@ -0,0 +1,116 @@
+package com.kaleyra.socket_io.thread;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class HashedWheelTimerTest {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 8);
+
+    @After
+    public void tearDown() {
+        this.timer.stop();
+    }
+
+    private static Runnable offer(final BlockingQueue<Long> queue) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(System.nanoTime());
+            }
+        };
+    }
+
+    @Test
+    public void expire() throws InterruptedException {
+        BlockingQueue<Long> queue = new LinkedBlockingQueue<Long>();
+        long start = System.nanoTime();
+
+        // longer than a round of the wheel
+        HashedWheelTimer.Timeout timeout = this.timer.newTimeout(offer(queue), 200, TimeUnit.MILLISECONDS);
+
+        long fired = queue.take();
+        assertTrue(fired - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(timeout.isExpired(), is(true));
+        assertThat(timeout.refresh(100, TimeUnit.MILLISECONDS), is(false));
+    }
+
+    @Test
+    public void refresh() throws InterruptedException {
+        BlockingQueue<Long> queue = new LinkedBlockingQueue<Long>();
+
+        HashedWheelTimer.Timeout timeout = this.timer.newTimeout(offer(queue), 50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(20);
+            assertThat(timeout.refresh(50, TimeUnit.MILLISECONDS), is(true));
+        }
+        long refreshed = System.nanoTime();
+
+        long fired = queue.take();
+        assertTrue(fired - refreshed >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void cancel() throws InterruptedException {
+        BlockingQueue<Long> queue = new LinkedBlockingQueue<Long>();
+
+        HashedWheelTimer.Timeout timeout = this.timer.newTimeout(offer(queue), 20, TimeUnit.MILLISECONDS);
+        assertThat(timeout.cancel(), is(true));
+
+        assertThat(queue.poll(100, TimeUnit.MILLISECONDS), is(nullValue()));
+        assertThat(timeout.isCancelled(), is(true));
+        assertThat(timeout.cancel(), is(false));
+    }
+
+    @Test
+    public void refreshWhileExpiring() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer-race", 1, TimeUnit.MILLISECONDS, 8);
+        try {
+            int count = 2000;
+            final AtomicIntegerArray ran = new AtomicIntegerArray(count);
+            HashedWheelTimer.Timeout[] timeouts = new HashedWheelTimer.Timeout[count];
+            boolean[] refreshed = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                timeouts[i] = timer.newTimeout(new Runnable() {
+                    @Override
+                    public void run() {
+                        ran.set(index, 1);
+                    }
+                }, 5, TimeUnit.MILLISECONDS);
+            }
+
+            // refreshes all of them around their deadline, while the wheel expires them
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(30);
+            while (System.nanoTime() - end < 0) {
+                for (int i = 0; i < count; i++) {
+                    if (timeouts[i].refresh(1, TimeUnit.HOURS)) {
+                        refreshed[i] = true;
+                    }
+                }
+            }
+            Thread.sleep(20);
+
+            for (int i = 0; i < count; i++) {
+                // a timeout pushed back by an hour never runs
+                assertThat(refreshed[i] && ran.get(i) == 1, is(false));
+                assertThat(refreshed[i] || ran.get(i) == 1, is(true));
+            }
+        } finally {
+            timer.stop();
+        }
+    }
+}
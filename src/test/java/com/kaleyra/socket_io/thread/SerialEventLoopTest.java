@@ -0,0 +1,142 @@
+package com.kaleyra.socket_io.thread;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class SerialEventLoopTest {
+
+    @Test
+    public void exec() throws InterruptedException {
+        final EventLoop loop = SerialEventLoop.ofVirtualThreads();
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+        queue.offer(loop.isCurrent());
+        loop.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(loop.isCurrent());
+                loop.exec(new Runnable() {
+                    @Override
+                    public void run() {
+                        queue.offer(1);
+                    }
+                });
+                loop.nextTick(new Runnable() {
+                    @Override
+                    public void run() {
+                        queue.offer(3);
+                    }
+                });
+                queue.offer(2);
+            }
+        });
+
+        assertThat(queue.take(), is((Object) false));
+        assertThat(queue.take(), is((Object) true));
+        for (int i = 1; i <= 3; i++) {
+            assertThat(queue.take(), is((Object) i));
+        }
+    }
+
+    @Test
+    public void runInOrder() throws InterruptedException {
+        EventLoop loop = SerialEventLoop.ofVirtualThreads();
+        final BlockingQueue<Integer> queue = new LinkedBlockingQueue<Integer>();
+
+        for (int i = 0; i < 1000; i++) {
+            final int value = i;
+            loop.nextTick(new Runnable() {
+                @Override
+                public void run() {
+                    queue.offer(value);
+                }
+            });
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(queue.take(), is(i));
+        }
+    }
+
+    @Test
+    public void blockedLoopDoesNotHoldOthers() throws InterruptedException {
+        final CountDownLatch unblock = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        SerialEventLoop.ofVirtualThreads().exec(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        SerialEventLoop.ofVirtualThreads().exec(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        unblock.countDown();
+    }
+
+    @Test
+    public void isCurrentWithManyProducers() throws InterruptedException {
+        final int producers = 4;
+        final int tasks = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        final SerialEventLoop loop = new SerialEventLoop(executor);
+        final AtomicInteger notCurrent = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlapping = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(producers * tasks);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (running.incrementAndGet() != 1) overlapping.incrementAndGet();
+                if (!loop.isCurrent()) notCurrent.incrementAndGet();
+                // leaves time for a drain that just gave up the loop to finish
+                Thread.yield();
+                if (!loop.isCurrent()) notCurrent.incrementAndGet();
+                running.decrementAndGet();
+                done.countDown();
+            }
+        };
+
+        for (int i = 0; i < producers; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < tasks; j++) {
+                        loop.nextTick(task);
+                        // short gaps, so the queue runs empty and drains often end
+                        LockSupport.parkNanos(1000);
+                    }
+                }
+            }).start();
+        }
+
+        assertThat(done.await(30, TimeUnit.SECONDS), is(true));
+        assertThat(notCurrent.get(), is(0));
+        assertThat(overlapping.get(), is(0));
+        executor.shutdown();
+    }
+}